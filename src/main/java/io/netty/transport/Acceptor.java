@@ -22,6 +22,11 @@ import io.netty.buffer.*;
 import io.netty.channel.*;
 import io.netty.transport.Config.ConfigGroup;
 import io.netty.transport.estimator.MessageSizeEstimator;
+import io.netty.transport.handler.acceptor.AcceptorHandler;
+import io.netty.transport.processor.DispatchExecutors;
+import io.netty.transport.processor.DispatchMode;
+import io.netty.transport.processor.DispatchStage;
+import io.netty.transport.processor.ProviderProcessor;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
@@ -47,6 +52,9 @@ public abstract class Acceptor {
     private ServerBootstrap bootstrap;
     private EventLoopGroup  boss;
     private EventLoopGroup  worker;
+    private volatile DispatchStage dispatchStage;
+    // IO_THREAD 时 dispatchStage 为 null, 用标识避免每次都进入同步块
+    private volatile boolean       dispatchStageResolved;
 
     public Acceptor(SocketAddress localAddress) {
         this(localAddress, Runtime.getRuntime().availableProcessors() << 1 + 1);
@@ -95,6 +103,43 @@ public abstract class Acceptor {
     public void shutdownGracefully() {
         boss.shutdownGracefully();
         worker.shutdownGracefully();
+        DispatchStage stage = dispatchStage;
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    /**
+     * 按 child options 中的 {@link Option#DISPATCH_MODE} 等选项创建的业务线程分发,
+     * 设置到 {@link AcceptorHandler} 后生效, {@link #acceptorHandler(ProviderProcessor)} 会自动设置,
+     * {@link DispatchMode#IO_THREAD} 时返回 null.
+     */
+    public DispatchStage dispatchStage() {
+        if (!dispatchStageResolved) {
+            synchronized (this) {
+                if (!dispatchStageResolved) {
+                    Config child = configGroup().child();
+                    dispatchStage = DispatchExecutors.newDispatchStage(
+                            child.getOption(Option.DISPATCH_MODE),
+                            child.getOption(Option.DISPATCH_THREADS),
+                            child.getOption(Option.DISPATCH_MAX_PENDING),
+                            child.getOption(Option.DISPATCH_ORDERED), "acceptor.dispatch");
+                    dispatchStageResolved = true;
+                }
+            }
+        }
+        return dispatchStage;
+    }
+
+    /**
+     * 创建设置好 {@link #dispatchStage()} 的 {@link AcceptorHandler}, 用于 pipeline 的最后一个 handler.
+     * AcceptorHandler 是 @Sharable 的, 所有链路可以共用一个.
+     */
+    public AcceptorHandler acceptorHandler(ProviderProcessor processor) {
+        AcceptorHandler handler = new AcceptorHandler();
+        handler.processor(processor);
+        handler.dispatchStage(dispatchStage());
+        return handler;
     }
 
     protected ThreadFactory bossThreadFactory(String name) {
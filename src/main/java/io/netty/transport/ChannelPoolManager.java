@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport;
+
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.channel.WrapChannelGroup;
+import io.netty.transport.handler.connector.ConnectionWatchdog;
+import io.netty.util.SystemClock;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 连接池管理器, 按地址维护 {@link WrapChannelGroup} 中的连接数.
+ * <ol>
+ * <li>连接数少于 minSize 时补足.</li>
+ * <li>超过一半的连接繁忙(不可写或者待响应请求数达到 {@link #setBusyPendingRequests(int)})时,
+ * 增加一个连接, 直到 {@link WrapChannelGroup#getCapacity()}.</li>
+ * <li>连续 {@link #setIdleChecks(int)} 次检查所有连接都空闲时, 关闭一个多余的连接.</li>
+ * </ol>
+ * 新连接通过 {@link TcpConnector#connect(UnresolvedAddress, boolean)} 异步建立, 在
+ * {@link Connection#setComplete(boolean)} 或 {@link Connection#isConnected()} 之前计入连接中,
+ * 超时后不再计入; connect 的实现需要调用其中之一, 否则新连接在超时前会被重复计数.
+ * 关闭多余连接前通过 {@link ConnectionWatchdog#skipReconnect} 标记该链路, 避免被重连, 共享同一个 watchdog 的其他链路不受影响.
+ */
+@Slf4j
+public class ChannelPoolManager implements TimerTask {
+
+    public static final String TAG = "【连接池】";
+
+    public static final long DEFAULT_CHECK_INTERVAL_MILLIS  = 1000;
+    public static final int  DEFAULT_BUSY_PENDING_REQUESTS  = 128;
+    public static final int  DEFAULT_IDLE_CHECKS            = 30;
+
+    private final TcpConnector                           connector;
+    private final ConcurrentMap<UnresolvedAddress, Pool> pools = new ConcurrentHashMap<UnresolvedAddress, Pool>();
+
+    private volatile long    checkIntervalMillis = DEFAULT_CHECK_INTERVAL_MILLIS;
+    private volatile int     busyPendingRequests = DEFAULT_BUSY_PENDING_REQUESTS;
+    private volatile int     idleChecks          = DEFAULT_IDLE_CHECKS;
+    private volatile Timeout timeout;
+    private volatile boolean stopped;
+
+    public ChannelPoolManager(TcpConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * 管理指定地址的连接数, 最大连接数为 group 当前的 capacity.
+     */
+    public void manage(UnresolvedAddress address, int minSize) {
+        manage(address, minSize, connector.group(address).getCapacity());
+    }
+
+    /**
+     * 管理指定地址的连接数, 并把 group 的 capacity 设置为 maxSize.
+     */
+    public void manage(UnresolvedAddress address, int minSize, int maxSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize: " + minSize + " (expected: >= 0)");
+        }
+        if (maxSize < minSize || maxSize < 1) {
+            throw new IllegalArgumentException(
+                    "maxSize: " + maxSize + " (expected: >= max(minSize, 1))");
+        }
+        WrapChannelGroup group = connector.group(address);
+        group.setCapacity(maxSize);
+        pools.put(address, new Pool(address, group, minSize));
+        log.debug("{}管理地址: {}, 连接数: [{}, {}].", TAG, address, minSize, maxSize);
+        schedule();
+    }
+
+    /**
+     * 不再管理指定地址, 已有的连接不受影响.
+     */
+    public void unmanage(UnresolvedAddress address) {
+        pools.remove(address);
+    }
+
+    public void stop() {
+        stopped = true;
+        Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    public void setCheckIntervalMillis(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    public int getBusyPendingRequests() {
+        return busyPendingRequests;
+    }
+
+    public void setBusyPendingRequests(int busyPendingRequests) {
+        this.busyPendingRequests = busyPendingRequests;
+    }
+
+    public int getIdleChecks() {
+        return idleChecks;
+    }
+
+    public void setIdleChecks(int idleChecks) {
+        this.idleChecks = idleChecks;
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (stopped) {
+            return;
+        }
+        for (Pool pool : pools.values()) {
+            try {
+                check(pool);
+            } catch (Throwable t) {
+                log.error("{}检查地址（{}）发生错误: {}.", TAG, pool.address, t.getMessage(), t);
+            }
+        }
+        this.timeout = null;
+        schedule();
+    }
+
+    private synchronized void schedule() {
+        if (!stopped && timeout == null && !pools.isEmpty()) {
+            timeout = connector.getTimer().newTimeout(this, checkIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void check(Pool pool) {
+        WrapChannelGroup group = pool.group;
+        List<? extends WrapChannel> channels = group.channels();
+        int size = channels.size();
+        int total = size + pool.connecting();
+
+        if (total < pool.minSize) {
+            pool.idleChecks = 0;
+            for (int i = total; i < pool.minSize; i++) {
+                connect(pool);
+            }
+            return;
+        }
+
+        int busy = 0;
+        boolean idle = true;
+        int threshold = busyPendingRequests;
+        for (WrapChannel channel : channels) {
+            int pending = channel.pendingRequests();
+            boolean writable = channel.isWritable();
+            if (!writable || pending >= threshold) {
+                busy++;
+            }
+            if (!writable || pending > 0) {
+                idle = false;
+            }
+        }
+
+        if (size > 0 && busy << 1 > size) {
+            pool.idleChecks = 0;
+            if (total < group.getCapacity()) {
+                log.debug("{}地址（{}）繁忙连接数: {}/{}, 增加连接.", TAG, pool.address, busy, size);
+                connect(pool);
+            }
+        } else if (idle && size > pool.minSize) {
+            if (++pool.idleChecks >= idleChecks) {
+                pool.idleChecks = 0;
+                shrink(pool, channels.get(size - 1));
+            }
+        } else {
+            pool.idleChecks = 0;
+        }
+    }
+
+    private void connect(final Pool pool) {
+        long connectTimeout = Math.max(connector.getChildConfig().getConnectTimeoutMillis(),
+                checkIntervalMillis);
+        long deadline = SystemClock.millisClock().now() + (connectTimeout << 1);
+        Connection connection;
+        try {
+            connection = connector.connect(pool.address, true);
+        } catch (Throwable t) {
+            log.warn("{}连接地址（{}）失败: {}.", TAG, pool.address, t.getMessage());
+            return;
+        }
+        pool.pending.put(connection, deadline);
+        connection.addCompleteLister(new Connection.ConnectionConnectCompleteListener() {
+
+            @Override
+            public void complete(Connection connection) {
+                pool.pending.remove(connection);
+            }
+        });
+    }
+
+    private void shrink(Pool pool, WrapChannel channel) {
+        // watchdog 可能被多条链路共享, 只让这一条不再重连
+        ConnectionWatchdog.skipReconnect(channel.channel());
+        log.debug("{}地址（{}）空闲, 关闭多余的连接: {}.", TAG, pool.address, channel);
+        channel.close();
+    }
+
+    private static final class Pool {
+
+        private final UnresolvedAddress address;
+        private final WrapChannelGroup  group;
+        private final int               minSize;
+        /**
+         * 连接中的 {@link Connection} -> 截止时间, 按引用识别, 每个连接只会被移除一次.
+         */
+        private final Map<Connection, Long> pending = new ConcurrentHashMap<Connection, Long>();
+        // 只在timer线程中访问
+        private       int               idleChecks;
+
+        Pool(UnresolvedAddress address, WrapChannelGroup group, int minSize) {
+            this.address = address;
+            this.group = group;
+            this.minSize = minSize;
+        }
+
+        /**
+         * 连接中的数量, 移除已经连接成功或超时的连接.
+         */
+        int connecting() {
+            long now = SystemClock.millisClock().now();
+            Iterator<Map.Entry<Connection, Long>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Connection, Long> entry = iterator.next();
+                if (entry.getKey().isConnected() || now > entry.getValue()) {
+                    iterator.remove();
+                }
+            }
+            return pending.size();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.netty.transport;
 
 
+import io.netty.transport.processor.DispatchMode;
 import java.util.*;
 
 public class Config {
@@ -111,11 +112,12 @@ public class Config {
             private volatile int     backlog      = 1024;
             private volatile int     rcvBuf       = -1;
             private volatile boolean reuseAddress = true;
+            private volatile int     listeners    = 1;
 
             @Override
             public List<Option<?>> getOptions() {
                 return getOptions(super.getOptions(), Option.SO_BACKLOG, Option.SO_RCVBUF,
-                        Option.SO_REUSEADDR);
+                        Option.SO_REUSEADDR, Option.LISTENERS);
             }
 
             @Override
@@ -141,6 +143,9 @@ public class Config {
                 if (option == Option.SO_REUSEADDR) {
                     return (T) Boolean.valueOf(isReuseAddress());
                 }
+                if (option == Option.LISTENERS) {
+                    return (T) Integer.valueOf(getListeners());
+                }
 
                 return super.getOption(option);
             }
@@ -155,6 +160,8 @@ public class Config {
                     setRcvBuf((Integer) value);
                 } else if (option == Option.SO_REUSEADDR) {
                     setReuseAddress((Boolean) value);
+                } else if (option == Option.LISTENERS) {
+                    setListeners((Integer) value);
                 } else {
                     return super.setOption(option, value);
                 }
@@ -185,6 +192,17 @@ public class Config {
             public void setReuseAddress(boolean reuseAddress) {
                 this.reuseAddress = reuseAddress;
             }
+
+            public int getListeners() {
+                return listeners;
+            }
+
+            public void setListeners(int listeners) {
+                if (listeners < 1) {
+                    listeners = 1;
+                }
+                this.listeners = listeners;
+            }
         }
 
         /**
@@ -203,6 +221,10 @@ public class Config {
             private volatile boolean keepAlive                = true;
             private volatile boolean tcpNoDelay               = true;
             private volatile boolean allowHalfClosure         = false;
+            private volatile DispatchMode dispatchMode        = DispatchMode.IO_THREAD;
+            private volatile int     dispatchThreads          = Runtime.getRuntime().availableProcessors() << 1;
+            private volatile int     dispatchMaxPending       = 65536;
+            private volatile boolean dispatchOrdered          = false;
 
             @Override
             public List<Option<?>> getOptions() {
@@ -210,7 +232,8 @@ public class Config {
                         Option.SO_LINGER, Option.SO_REUSEADDR, Option.CONNECT_TIMEOUT_MILLIS,
                         Option.WRITE_BUFFER_HIGH_WATER_MARK, Option.WRITE_BUFFER_LOW_WATER_MARK,
                         Option.KEEP_ALIVE, Option.TCP_NODELAY, Option.IP_TOS,
-                        Option.ALLOW_HALF_CLOSURE);
+                        Option.ALLOW_HALF_CLOSURE, Option.DISPATCH_MODE, Option.DISPATCH_THREADS,
+                        Option.DISPATCH_MAX_PENDING, Option.DISPATCH_ORDERED);
             }
 
             @Override
@@ -260,6 +283,18 @@ public class Config {
                 if (option == Option.ALLOW_HALF_CLOSURE) {
                     return (T) Boolean.valueOf(isAllowHalfClosure());
                 }
+                if (option == Option.DISPATCH_MODE) {
+                    return (T) getDispatchMode();
+                }
+                if (option == Option.DISPATCH_THREADS) {
+                    return (T) Integer.valueOf(getDispatchThreads());
+                }
+                if (option == Option.DISPATCH_MAX_PENDING) {
+                    return (T) Integer.valueOf(getDispatchMaxPending());
+                }
+                if (option == Option.DISPATCH_ORDERED) {
+                    return (T) Boolean.valueOf(isDispatchOrdered());
+                }
 
                 return super.getOption(option);
             }
@@ -290,6 +325,14 @@ public class Config {
                     setTcpNoDelay((Boolean) value);
                 } else if (option == Option.ALLOW_HALF_CLOSURE) {
                     setAllowHalfClosure((Boolean) value);
+                } else if (option == Option.DISPATCH_MODE) {
+                    setDispatchMode((DispatchMode) value);
+                } else if (option == Option.DISPATCH_THREADS) {
+                    setDispatchThreads((Integer) value);
+                } else if (option == Option.DISPATCH_MAX_PENDING) {
+                    setDispatchMaxPending((Integer) value);
+                } else if (option == Option.DISPATCH_ORDERED) {
+                    setDispatchOrdered((Boolean) value);
                 } else {
                     return super.setOption(option, value);
                 }
@@ -384,6 +427,38 @@ public class Config {
             public void setAllowHalfClosure(boolean allowHalfClosure) {
                 this.allowHalfClosure = allowHalfClosure;
             }
+
+            public DispatchMode getDispatchMode() {
+                return dispatchMode;
+            }
+
+            public void setDispatchMode(DispatchMode dispatchMode) {
+                this.dispatchMode = dispatchMode;
+            }
+
+            public int getDispatchThreads() {
+                return dispatchThreads;
+            }
+
+            public void setDispatchThreads(int dispatchThreads) {
+                this.dispatchThreads = dispatchThreads;
+            }
+
+            public int getDispatchMaxPending() {
+                return dispatchMaxPending;
+            }
+
+            public void setDispatchMaxPending(int dispatchMaxPending) {
+                this.dispatchMaxPending = dispatchMaxPending;
+            }
+
+            public boolean isDispatchOrdered() {
+                return dispatchOrdered;
+            }
+
+            public void setDispatchOrdered(boolean dispatchOrdered) {
+                this.dispatchOrdered = dispatchOrdered;
+            }
         }
     }
 }
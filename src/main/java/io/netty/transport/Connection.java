@@ -1,7 +1,7 @@
 package io.netty.transport;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import lombok.*;
 
 @Getter
@@ -12,7 +12,11 @@ public abstract class Connection {
     @Setter
     private volatile boolean                                 connected         = false;
     private volatile boolean                                 complete          = false;
-    private          List<ConnectionConnectCompleteListener> completeListeners = new ArrayList<ConnectionConnectCompleteListener>();
+    /**
+     * 是否调用过 {@link #setComplete(boolean)}, 之后添加的 listener 立即回调.
+     */
+    private volatile boolean                                 done              = false;
+    private final    Queue<ConnectionConnectCompleteListener> completeListeners = new ConcurrentLinkedQueue<ConnectionConnectCompleteListener>();
 
     public Connection(UnresolvedAddress address) {
         this.address = address;
@@ -20,16 +24,29 @@ public abstract class Connection {
 
     public abstract void setReconnect(boolean reconnect);
 
+    /**
+     * 连接过程结束(成功或失败)时由 {@link TcpConnector#connect(UnresolvedAddress, boolean)}
+     * 的实现调用, 回调所有 listener.
+     */
     public void setComplete(boolean flag) {
         this.complete = flag;
-        for (ConnectionConnectCompleteListener callback : completeListeners) {
-            callback.complete(this);
-        }
+        this.done = true;
+        notifyListeners();
     }
 
     public void addCompleteLister(ConnectionConnectCompleteListener callback) {
         completeListeners.add(callback);
-        if (complete) {
+        if (done) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * 每个 listener 只会被取出一次, 并发调用时也只回调一次.
+     */
+    private void notifyListeners() {
+        ConnectionConnectCompleteListener callback;
+        while ((callback = completeListeners.poll()) != null) {
             callback.complete(this);
         }
     }
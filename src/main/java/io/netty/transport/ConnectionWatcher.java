@@ -22,6 +22,8 @@
 
 package io.netty.transport;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * ConnectionWatcher.
  * <p>2017 Suk All rights reserved.</p>
@@ -42,4 +44,17 @@ public interface ConnectionWatcher {
      * if available return true, otherwise return false.
      */
     boolean waitForAvailable(long timeoutMillis);
+
+    /**
+     * 不阻塞调用线程的 {@link #waitForAvailable(long)}, 可以在 event loop 中调用.
+     * 基于 {@link io.netty.transport.channel.WrapChannelGroup} 的实现应该覆盖, 直接返回
+     * {@link io.netty.transport.channel.WrapChannelGroup#waitForAvailableAsync(long, io.netty.util.Timer)}.
+     * <p>默认实现不占用任何线程, 返回的 future 以 {@link UnsupportedOperationException} 失败.</p>
+     */
+    default CompletableFuture<Boolean> waitForAvailableAsync(long timeoutMillis) {
+        CompletableFuture<Boolean> future = new CompletableFuture<Boolean>();
+        future.completeExceptionally(new UnsupportedOperationException(
+                getClass().getName() + " 没有实现 waitForAvailableAsync"));
+        return future;
+    }
 }
@@ -26,13 +26,25 @@ package io.netty.transport;
 import me.asu.util.NamedThreadFactory;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.*;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.transport.channel.Invoker;
+import io.netty.transport.channel.WrapChannel;
 import io.netty.transport.channel.WrapChannelGroup;
 import io.netty.transport.estimator.MessageSizeEstimator;
+import io.netty.transport.handler.ChannelHandlerHolder;
+import io.netty.transport.handler.connector.ConnectPermits;
+import io.netty.transport.handler.connector.ConnectionWatchdog;
+import io.netty.transport.handler.connector.ConnectorHandler;
+import io.netty.transport.processor.ConsumerProcessor;
+import io.netty.transport.processor.DispatchExecutors;
+import io.netty.transport.processor.DispatchMode;
+import io.netty.transport.processor.DispatchStage;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.PlatformDependent;
+import java.net.SocketAddress;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.concurrent.*;
@@ -47,15 +59,34 @@ import java.util.concurrent.*;
 @lombok.Data
 public abstract class Connector {
 
+    /**
+     * 默认的同时进行中的重连数上限.
+     */
+    public static final int DEFAULT_MAX_CONNECTING = 64;
+
     protected final HashedWheelTimer                                   timer             = new HashedWheelTimer(
             new NamedThreadFactory("connector.timer"));
     protected final ConnectionManager                                  connectionManager = new ConnectionManager();
+    /**
+     * 请求/响应关联, 设置到 {@link io.netty.transport.handler.connector.ConnectorHandler} 后生效,
+     * 见 {@link #connectorHandler(ConsumerProcessor)}.
+     */
+    protected final Invoker                                            invoker           = new Invoker(timer);
+    /**
+     * 同时进行中的重连数限制, 由 {@link #watchdog(SocketAddress, WrapChannelGroup, ChannelHandlerHolder)}
+     * 传给 {@link ConnectionWatchdog}.
+     */
+    protected final ConnectPermits                                     connectPermits    = new ConnectPermits(
+            DEFAULT_MAX_CONNECTING);
     private final   ConcurrentMap<UnresolvedAddress, WrapChannelGroup> addressGroups     = new ConcurrentHashMap<UnresolvedAddress, WrapChannelGroup>();
     protected          EventLoopGroup   workerGroup;
     protected          Bootstrap        bootstrap;
     protected          EventLoopGroup   worker;
     protected volatile ByteBufAllocator allocator;
     protected int nWorkers = Runtime.getRuntime().availableProcessors() * 2 - 1;
+    private volatile DispatchStage dispatchStage;
+    // IO_THREAD 时 dispatchStage 为 null, 用标识避免每次都进入同步块
+    private volatile boolean       dispatchStageResolved;
 
     public Connector() {
     }
@@ -86,9 +117,72 @@ public abstract class Connector {
         connectionManager.cancelAllReconnect();
         worker.shutdownGracefully();
         timer.stop();
+        DispatchStage stage = dispatchStage;
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    /**
+     * 按 {@link Option#DISPATCH_MODE} 等选项创建的业务线程分发,
+     * 设置到 {@link io.netty.transport.handler.connector.ConnectorHandler} 后生效,
+     * {@link DispatchMode#IO_THREAD} 或者不支持这些选项时返回 null.
+     */
+    public DispatchStage dispatchStage() {
+        if (!dispatchStageResolved) {
+            synchronized (this) {
+                if (!dispatchStageResolved) {
+                    Config child = config();
+                    DispatchMode mode = child.getOption(Option.DISPATCH_MODE);
+                    if (mode != null && mode != DispatchMode.IO_THREAD) {
+                        dispatchStage = DispatchExecutors.newDispatchStage(mode,
+                                child.getOption(Option.DISPATCH_THREADS),
+                                child.getOption(Option.DISPATCH_MAX_PENDING),
+                                child.getOption(Option.DISPATCH_ORDERED), "connector.dispatch");
+                    }
+                    dispatchStageResolved = true;
+                }
+            }
+        }
+        return dispatchStage;
     }
 
 
+    /**
+     * 创建设置好 {@link #invoker} 和 {@link #dispatchStage()} 的
+     * {@link ConnectorHandler}, 用于 pipeline 的最后一个 handler;
+     * 自行创建的 ConnectorHandler 需要调用 setInvoker 后 {@link WrapChannel#invoke} 才可用.
+     */
+    public ConnectorHandler connectorHandler(ConsumerProcessor processor) {
+        ConnectorHandler handler = new ConnectorHandler();
+        handler.setProcessor(processor);
+        handler.setInvoker(invoker);
+        handler.setDispatchStage(dispatchStage());
+        return handler;
+    }
+
+    /**
+     * 本 Connector 所有重连共用的并发许可.
+     */
+    public ConnectPermits connectPermits() {
+        return connectPermits;
+    }
+
+    /**
+     * 创建使用 {@link #connectPermits()} 限制同时进行中的重连数的 {@link ConnectionWatchdog},
+     * 重连后的 pipeline 由 handlers 提供. 每个 channel 使用一个实例.
+     */
+    public ConnectionWatchdog watchdog(SocketAddress remoteAddress, WrapChannelGroup group,
+                                       final ChannelHandlerHolder handlers) {
+        return new ConnectionWatchdog(bootstrap, timer, remoteAddress, group, connectPermits) {
+
+            @Override
+            public ChannelHandler[] handlers() {
+                return handlers.handlers();
+            }
+        };
+    }
+
     public void setOptions() {
         Config child = config();
 
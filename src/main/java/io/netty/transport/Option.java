@@ -22,6 +22,8 @@
 
 package io.netty.transport;
 
+import io.netty.transport.processor.DispatchMode;
+
 /**
  * Transport option.
  */
@@ -100,6 +102,11 @@ public final class Option<T> {
      * 只要在accept queue里就已经变成状态ESTABLISHED, 所以在使用ss或netstat排查这方面问题不要被ESTABLISHED迷惑.
      */
     public static final Option<Integer> SO_BACKLOG                   = newInstance("SO_BACKLOG");
+    /**
+     * 监听同一个端口的server channel数量, 大于1时使用 SO_REUSEPORT,
+     * 由内核把新连接分散到多个accept队列, 仅在 native epoll 下有效.
+     */
+    public static final Option<Integer> LISTENERS                    = newInstance("LISTENERS");
     public static final Option<Integer> IP_TOS                       = newInstance("IP_TOS");
     public static final Option<Boolean> ALLOW_HALF_CLOSURE           = newInstance(
             "ALLOW_HALF_CLOSURE");
@@ -130,6 +137,27 @@ public final class Option<T> {
     public static final Option<Integer> IO_RATIO                     = newInstance("IO_RATIO");
     public static final Option<Integer> CONNECT_TIMEOUT_MILLIS       = newInstance(
             "CONNECT_TIMEOUT_MILLIS");
+    /**
+     * 消息处理的线程模型, 默认直接在IO线程中处理.
+     *
+     * @see DispatchMode
+     */
+    public static final Option<DispatchMode> DISPATCH_MODE           = newInstance("DISPATCH_MODE");
+    /**
+     * {@link DispatchMode#THREAD_POOL} 的线程数.
+     */
+    public static final Option<Integer> DISPATCH_THREADS             = newInstance(
+            "DISPATCH_THREADS");
+    /**
+     * 业务线程中未处理完的消息数上限, 达到后暂停读取.
+     */
+    public static final Option<Integer> DISPATCH_MAX_PENDING         = newInstance(
+            "DISPATCH_MAX_PENDING");
+    /**
+     * 同一个连接的消息是否按接收顺序处理.
+     */
+    public static final Option<Boolean> DISPATCH_ORDERED             = newInstance(
+            "DISPATCH_ORDERED");
     public String name;
 
     private Option(String name) {
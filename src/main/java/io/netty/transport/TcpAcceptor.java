@@ -3,12 +3,15 @@ package io.netty.transport;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.transport.Config.ConfigGroup;
 import io.netty.util.OsUtils;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
@@ -149,16 +152,44 @@ public abstract class TcpAcceptor extends Acceptor {
 
     @Override
     public void start(boolean sync) throws InterruptedException {
+        int listeners = listeners();
+        if (listeners > 1) {
+            // 必须在第一次bind之前设置, 所有监听的socket都要开启SO_REUSEPORT
+            bootstrap().option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+
         // wait until the server socket is bind succeed.
         ChannelFuture future = null;
         future = bind(localAddress).sync();
         SocketAddress socketAddress = future.channel().localAddress();
         setLocalAddress(socketAddress);
-        log.info("TCP 服务启动[{}] {}", getLocalAddress(), (sync ? ", 等待到server socket关闭。" : "。"));
+
+        List<Channel> channels = new ArrayList<Channel>(listeners);
+        channels.add(future.channel());
+        for (int i = 1; i < listeners; i++) {
+            // 绑定到实际的地址, 端口为0时也能监听同一个端口
+            channels.add(bind(socketAddress).sync().channel());
+        }
+        log.info("TCP 服务启动[{}], 监听数: {}{}", getLocalAddress(), listeners,
+                (sync ? ", 等待到server socket关闭。" : "。"));
         if (sync) {
             // wait until the server socket is closed.
-            future.channel().closeFuture().sync();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
+        }
+    }
+
+    /**
+     * 实际的监听数, 只有 native epoll 支持 SO_REUSEPORT 多监听, 其他情况为1.
+     */
+    private int listeners() {
+        int listeners = configGroup.parent().getListeners();
+        if (listeners > 1 && socketType() != TcpChannelProvider.SocketType.NATIVE_EPOLL) {
+            log.warn("SO_REUSEPORT 多监听只支持 native epoll, 使用单个监听。");
+            return 1;
         }
+        return listeners;
     }
 
     @Override
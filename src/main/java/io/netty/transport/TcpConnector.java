@@ -44,6 +44,10 @@ public abstract class TcpConnector extends Connector {
 
     protected final ConfigGroup.ChildConfig childConfig = new ConfigGroup.ChildConfig();
     protected       boolean                 isNative    = true;
+    /**
+     * 按地址维护连接数, 见 {@link #pool(UnresolvedAddress, int, int)}.
+     */
+    protected final ChannelPoolManager      poolManager = new ChannelPoolManager(this);
 
     public TcpConnector() {
         super();
@@ -162,5 +166,18 @@ public abstract class TcpConnector extends Connector {
         return connect(address, false);
     }
 
+    /**
+     * 由 {@link ChannelPoolManager} 维护到 address 的连接数在 [minSize, maxSize] 之间.
+     */
+    public void pool(UnresolvedAddress address, int minSize, int maxSize) {
+        poolManager.manage(address, minSize, maxSize);
+    }
+
+    @Override
+    public void shutdownGracefully() {
+        poolManager.stop();
+        super.shutdownGracefully();
+    }
+
     public abstract Connection connect(UnresolvedAddress address, boolean async);
 }
@@ -3,18 +3,25 @@ package io.netty.transport;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollDatagramChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.handler.ProtoDatagramDecoder;
+import io.netty.transport.handler.ProtoDatagramEncoder;
+import io.netty.transport.handler.acceptor.UdpAcceptorHandler;
+import io.netty.transport.processor.ProviderProcessor;
+import io.netty.util.CharsetUtil;
 import io.netty.util.HashedWheelTimer;
 import io.netty.util.OsUtils;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadFactory;
 import lombok.Getter;
@@ -23,12 +30,31 @@ import lombok.extern.slf4j.Slf4j;
 import me.asu.util.NamedThreadFactory;
 
 /**
+ * UDP 服务, 设置 {@link #setProcessor(ProviderProcessor)} 后按 ProtoMessage 格式编解码,
+ * 每个报文一个消息, 否则按 UTF-8 字符串交给 {@link #getHandler()}.
+ * <p>
+ * native epoll 下 {@link #setBatchSize(int)} 大于1时使用 recvmmsg 批量读取报文, 响应通过
+ * {@link WrapChannel#write(Object)} 合并flush, 由 sendmmsg 批量发送, 这时超过
+ * {@link #setMaxDatagramSize(int)} 的报文会被截断丢弃, 默认不开启; 开启 {@link #setReusePort(boolean)}
+ * 后每个 worker 绑定一个 SO_REUSEPORT 的 socket, 由内核在它们之间分配报文.
+ * <p>
+ * 以上设置在第一次 {@link #bind(SocketAddress)} 时生效, 之后修改无效.
+ *
  * @author suk
  */
 @Slf4j
 public class UdpAcceptor {
 
     private static final int              BYTES_1M = 1024 * 1024;
+    /**
+     * 默认的最大报文大小, 也是 recvmmsg 每个报文的缓冲区大小, 只在批量读取时使用.
+     */
+    public static final  int              DEFAULT_MAX_DATAGRAM_SIZE = 2048;
+    /**
+     * 默认一次 recvmmsg/sendmmsg 最多处理的报文数, 1 表示不批量读取.
+     */
+    public static final  int              DEFAULT_BATCH_SIZE        = 1;
+    private static final StringDatagramDecoder STRING_DECODER = new StringDatagramDecoder();
     protected final      HashedWheelTimer timer    = new HashedWheelTimer(
             new NamedThreadFactory("acceptor.timer"));
     /**
@@ -43,8 +69,24 @@ public class UdpAcceptor {
     @Getter
     @Setter
     private            ChannelInboundHandlerAdapter handler;
+    @Getter
+    @Setter
+    private            ProviderProcessor            processor;
+    /**
+     * 每个 worker 绑定一个 socket, 只支持 native epoll.
+     */
+    @Getter
+    @Setter
+    private            boolean                      reusePort;
+    @Getter
+    @Setter
+    private            int                          maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+    @Getter
+    @Setter
+    private            int                          batchSize       = DEFAULT_BATCH_SIZE;
     private            Bootstrap                    bootstrap;
     private            EventLoopGroup               worker;
+    private            boolean                      configured;
 
 
     public UdpAcceptor(int port) {
@@ -89,41 +131,106 @@ public class UdpAcceptor {
         initChannelClass();
     }
 
-    public ChannelFuture bind(final SocketAddress localAddress) {
-        bootstrap.handler(new ChannelInitializer<NioDatagramChannel>() {
-            @Override
-            protected void initChannel(NioDatagramChannel ch) throws Exception {
-                ch.pipeline().addLast("framer", new MessageToMessageDecoder<DatagramPacket>() {
-                    @Override
-                    protected void decode(ChannelHandlerContext ctx,
-                                          DatagramPacket msg,
-                                          List<Object> out) throws Exception {
-                        out.add(msg.content().toString(Charset.forName("UTF-8")));
-                    }
-                }).addLast("handler", handler);
-            }
-        });
-
+    public ChannelFuture bind(SocketAddress localAddress) {
+        configure();
         return bootstrap.bind(localAddress);
     }
 
+    /**
+     * 按当前设置配置 bootstrap, 只在第一次 bind 时执行一次.
+     */
+    private synchronized void configure() {
+        if (configured) {
+            return;
+        }
+        configured = true;
+        if (listeners() > 1) {
+            // 必须在第一次bind之前设置, 所有socket都要开启SO_REUSEPORT
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        final boolean batching = isEpoll() && batchSize > 1;
+        if (batching) {
+            // 读缓冲区可以容纳 batchSize 个报文时使用 recvmmsg
+            bootstrap.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, maxDatagramSize)
+                     .option(ChannelOption.RCVBUF_ALLOCATOR,
+                             new FixedRecvByteBufAllocator(maxDatagramSize * batchSize));
+        }
+        if (processor != null) {
+            final ProtoDatagramDecoder decoder = new ProtoDatagramDecoder();
+            final ProtoDatagramEncoder encoder = new ProtoDatagramEncoder();
+            final UdpAcceptorHandler udpHandler = new UdpAcceptorHandler();
+            udpHandler.processor(processor);
+            // NioDatagramChannel 和 EpollDatagramChannel 都可以使用
+            bootstrap.handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    if (batching) {
+                        // 同一轮读取产生的响应一起flush, 由 sendmmsg 批量发送
+                        WrapChannel.attachChannel(ch).enableWriteCoalescing(batchSize,
+                                maxDatagramSize * batchSize);
+                    }
+                    ch.pipeline().addLast("decoder", decoder)
+                      .addLast("encoder", encoder)
+                      .addLast("handler", udpHandler);
+                }
+            });
+        } else {
+            bootstrap.handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    ch.pipeline().addLast("framer", STRING_DECODER).addLast("handler", handler);
+                }
+            });
+        }
+    }
+
     public void start() throws InterruptedException {
         start(true);
     }
 
     public void start(boolean sync) throws InterruptedException {
+        int listeners = listeners();
+
         // wait until the server socket is bind succeed.
         ChannelFuture future = null;
         future = bind(localAddress).sync();
         SocketAddress socketAddress = future.channel().localAddress();
         setLocalAddress(socketAddress);
-        log.info("UDP 服务启动[{}] {}", getLocalAddress(), (sync ? ", 等待到server socket关闭。" : "。"));
+
+        List<Channel> channels = new ArrayList<Channel>(listeners);
+        channels.add(future.channel());
+        for (int i = 1; i < listeners; i++) {
+            // 绑定到实际的地址, 端口为0时也能绑定同一个端口
+            channels.add(bind(socketAddress).sync().channel());
+        }
+        log.info("UDP 服务启动[{}], socket数: {}{}", getLocalAddress(), listeners,
+                (sync ? ", 等待到server socket关闭。" : "。"));
         if (sync) {
             // wait until the server socket is closed.
-            future.channel().closeFuture().sync();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         }
     }
 
+    /**
+     * 实际绑定的socket数, 只有 native epoll 支持 SO_REUSEPORT, 其他情况为1.
+     */
+    private int listeners() {
+        if (!reusePort) {
+            return 1;
+        }
+        if (!isEpoll()) {
+            log.warn("SO_REUSEPORT 只支持 native epoll, 使用单个socket。");
+            return 1;
+        }
+        return nWorkers;
+    }
+
+    private boolean isEpoll() {
+        return isNative && NativeSupport.isNativeEPollAvailable();
+    }
+
     public SocketAddress localAddress() {
         return localAddress;
     }
@@ -165,4 +272,14 @@ public class UdpAcceptor {
         }
     }
 
+    @ChannelHandler.Sharable
+    private static class StringDatagramDecoder extends MessageToMessageDecoder<DatagramPacket> {
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out)
+                throws Exception {
+            out.add(msg.content().toString(CharsetUtil.UTF_8));
+        }
+    }
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+/**
+ * {@link WrapChannelGroup#next()} 的 channel 选择策略.
+ * <p>在每次发送的热点路径上调用, 实现必须是无锁且不分配对象的.</p>
+ *
+ * @author Suk
+ * @see ChannelSelectors
+ */
+public interface ChannelSelector {
+
+    /**
+     * 选择一个 channel.
+     *
+     * @param group    所属的 group
+     * @param channels channels 快照, 长度至少为 2, 不能修改
+     * @return 选中的 channel
+     */
+    WrapChannel select(WrapChannelGroup group, WrapChannel[] channels);
+}
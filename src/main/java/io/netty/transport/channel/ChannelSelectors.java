@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 内置的 {@link ChannelSelector}.
+ *
+ * @author Suk
+ */
+public final class ChannelSelectors {
+
+    /**
+     * 轮询, 默认策略.
+     */
+    public static final ChannelSelector ROUND_ROBIN = new ChannelSelector() {
+
+        @Override
+        public WrapChannel select(WrapChannelGroup group, WrapChannel[] channels) {
+            return channels[group.nextIndex() % channels.length];
+        }
+
+        @Override
+        public String toString() {
+            return "ROUND_ROBIN";
+        }
+    };
+
+    /**
+     * 选择未完成请求({@link WrapChannel#pendingRequests()})最少的 channel,
+     * 从随机位置开始扫描, 避免相同负载时总是选中第一个.
+     */
+    public static final ChannelSelector LEAST_PENDING = new ChannelSelector() {
+
+        @Override
+        public WrapChannel select(WrapChannelGroup group, WrapChannel[] channels) {
+            int length = channels.length;
+            int start = ThreadLocalRandom.current().nextInt(length);
+            WrapChannel best = channels[start];
+            int bestPending = best.pendingRequests();
+            for (int i = 1; i < length && bestPending > 0; i++) {
+                WrapChannel ch = channels[(start + i) % length];
+                int pending = ch.pendingRequests();
+                if (pending < bestPending) {
+                    best = ch;
+                    bestPending = pending;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String toString() {
+            return "LEAST_PENDING";
+        }
+    };
+
+    /**
+     * Power of two choices: 随机选两个 channel, 取写缓冲区余量
+     * ({@link WrapChannel#bytesBeforeUnwritable()}) 更大的一个, 相同时取未完成请求少的一个.
+     */
+    public static final ChannelSelector POWER_OF_TWO_CHOICES = new ChannelSelector() {
+
+        @Override
+        public WrapChannel select(WrapChannelGroup group, WrapChannel[] channels) {
+            int length = channels.length;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(length);
+            int j = random.nextInt(length - 1);
+            if (j >= i) {
+                j++;
+            }
+            WrapChannel a = channels[i];
+            WrapChannel b = channels[j];
+            long aBytes = a.bytesBeforeUnwritable();
+            long bBytes = b.bytesBeforeUnwritable();
+            if (aBytes != bBytes) {
+                return aBytes > bBytes ? a : b;
+            }
+            return a.pendingRequests() <= b.pendingRequests() ? a : b;
+        }
+
+        @Override
+        public String toString() {
+            return "POWER_OF_TWO_CHOICES";
+        }
+    };
+
+    private ChannelSelectors() {
+    }
+
+    /**
+     * 跳过不可写的 channel: 如果 delegate 选中的 channel 不可写, 从它之后找第一个可写的,
+     * 全部不可写时仍然返回 delegate 的选择.
+     */
+    public static ChannelSelector writableFirst(final ChannelSelector delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate");
+        }
+        return new ChannelSelector() {
+
+            @Override
+            public WrapChannel select(WrapChannelGroup group, WrapChannel[] channels) {
+                WrapChannel selected = delegate.select(group, channels);
+                if (selected.isWritable()) {
+                    return selected;
+                }
+                int length = channels.length;
+                int start = indexOf(channels, selected);
+                for (int i = 1; i < length; i++) {
+                    WrapChannel ch = channels[(start + i) % length];
+                    if (ch.isWritable()) {
+                        return ch;
+                    }
+                }
+                return selected;
+            }
+
+            @Override
+            public String toString() {
+                return "writableFirst(" + delegate + ')';
+            }
+        };
+    }
+
+    private static int indexOf(WrapChannel[] channels, WrapChannel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] == channel) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
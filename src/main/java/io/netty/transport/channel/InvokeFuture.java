@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+import io.netty.transport.exception.InvokeTimeoutException;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import me.asu.socket.message.IMessage;
+
+/**
+ * 一次请求的响应 future, 同时作为超时任务和写结果监听器, 每个请求只有这一个对象.
+ *
+ * @author Suk
+ */
+final class InvokeFuture extends CompletableFuture<IMessage>
+        implements TimerTask, FutureListener<WrapChannel> {
+
+    private final Invoker     invoker;
+    private final WrapChannel channel;
+    private final long        key;
+    private final long        timeoutMillis;
+    volatile      Timeout     timeout;
+
+    InvokeFuture(Invoker invoker, WrapChannel channel, long key, long timeoutMillis) {
+        this.invoker = invoker;
+        this.channel = channel;
+        this.key = key;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    WrapChannel channel() {
+        return channel;
+    }
+
+    long key() {
+        return key;
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (invoker.remove(this)) {
+            completeExceptionally(new InvokeTimeoutException(
+                    "等待响应超时(" + timeoutMillis + "ms), seqId: " + (int) key + ", channel: "
+                            + channel));
+        }
+    }
+
+    @Override
+    public void operationSuccess(WrapChannel c) throws Exception {
+        // 等待响应
+    }
+
+    @Override
+    public void operationFailure(WrapChannel c, Throwable cause) throws Exception {
+        if (invoker.remove(this)) {
+            cancelTimeout();
+            completeExceptionally(cause);
+        }
+    }
+
+    void cancelTimeout() {
+        Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+}
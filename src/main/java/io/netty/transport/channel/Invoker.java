@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+import io.netty.util.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.asu.socket.message.IMessage;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 基于 seqId 的请求/响应关联.
+ * <p>
+ * {@link #invoke(WrapChannel, ProtoMessage, long)} 为请求分配 seqId 并返回响应的
+ * {@link CompletableFuture}, {@link io.netty.transport.handler.connector.ConnectorHandler}
+ * 收到响应后调用 {@link #complete(WrapChannel, IMessage)} 完成 future, 超时由共享的 {@link Timer} 处理,
+ * 连接断开时调用 {@link #failAll(WrapChannel, Throwable)} 让这个连接上等待中的请求立即失败.
+ * 被关联的响应不再交给 {@link io.netty.transport.processor.ConsumerProcessor},
+ * 如果响应是 {@link io.netty.transport.message.ByteBufProtoMessage}, 由 future 的使用方负责释放.
+ * </p>
+ *
+ * @author Suk
+ */
+public class Invoker {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final Timer           timer;
+    private final PendingRequests pending;
+    private final AtomicInteger   seqIdGenerator = new AtomicInteger(0);
+
+    public Invoker(Timer timer) {
+        this(timer, DEFAULT_STRIPES);
+    }
+
+    public Invoker(Timer timer, int nStripes) {
+        if (timer == null) {
+            throw new NullPointerException("timer");
+        }
+        this.timer = timer;
+        this.pending = new PendingRequests(nStripes);
+    }
+
+    /**
+     * 发送请求并等待响应, 请求的 seqId 会被覆盖.
+     *
+     * @param channel       {@link WrapChannel}
+     * @param request       请求
+     * @param timeoutMillis 超时时间, 超时后 future 以
+     *                      {@link io.netty.transport.exception.InvokeTimeoutException} 结束
+     * @return 响应的 future
+     */
+    public CompletableFuture<IMessage> invoke(WrapChannel channel, ProtoMessage request,
+                                              long timeoutMillis) {
+        int seqId = nextSeqId();
+        request.getHeader().setSeqId(seqId);
+
+        long key = key(seqId);
+        InvokeFuture future = new InvokeFuture(this, channel, key, timeoutMillis);
+        // 先登记再设置超时, 响应先于超时设置到达时只会留下一个空跑的超时任务
+        pending.put(key, future);
+        channel.addPendingRequest(future);
+        future.timeout = timer.newTimeout(future, timeoutMillis, TimeUnit.MILLISECONDS);
+        channel.write(request, future);
+        return future;
+    }
+
+    /**
+     * 用响应完成对应的请求, 只匹配在同一个连接上发出的请求.
+     *
+     * @param channel  收到响应的连接
+     * @param response 响应
+     * @return 找到等待中的请求返回 true, 否则返回 false
+     */
+    public boolean complete(WrapChannel channel, IMessage response) {
+        if (!(response instanceof ProtoMessage)) {
+            return false;
+        }
+        int seqId = ((ProtoMessage) response).getHeader().getSeqId();
+        if (seqId == 0) {
+            // 0 保留给心跳等不需要响应的消息
+            return false;
+        }
+        InvokeFuture future = pending.get(key(seqId));
+        if (future == null || future.channel() != channel || !remove(future)) {
+            return false;
+        }
+        future.cancelTimeout();
+        future.complete(response);
+        return true;
+    }
+
+    /**
+     * 连接上所有等待响应的请求以 cause 失败.
+     */
+    public void failAll(WrapChannel channel, Throwable cause) {
+        for (InvokeFuture future : channel.pendingInvokeFutures()) {
+            if (remove(future)) {
+                future.cancelTimeout();
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * 等待响应的请求数.
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    boolean remove(InvokeFuture future) {
+        if (pending.remove(future.key(), future)) {
+            future.channel().removePendingRequest(future);
+            return true;
+        }
+        return false;
+    }
+
+    private int nextSeqId() {
+        int seqId;
+        do {
+            seqId = seqIdGenerator.incrementAndGet();
+        } while (seqId == 0);
+        return seqId;
+    }
+
+    private static long key(int seqId) {
+        return seqId & 0xFFFFFFFFL;
+    }
+}
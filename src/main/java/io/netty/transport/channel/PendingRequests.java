@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+/**
+ * 以 long 为 key 的分段 map, 保存等待响应的请求.
+ * <p>key 不装箱, 按 key 的低位分段加锁, 高并发pipelining时各段之间互不竞争.</p>
+ *
+ * @author Suk
+ */
+final class PendingRequests {
+
+    private final Stripe[] stripes;
+    private final int      mask;
+
+    PendingRequests(int nStripes) {
+        if (nStripes < 1) {
+            throw new IllegalArgumentException("nStripes: " + nStripes + " (expected: > 0)");
+        }
+        // round up to power of 2
+        int n = Integer.highestOneBit(nStripes - 1) << 1;
+        if (n < 1) {
+            n = 1;
+        }
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+        mask = n - 1;
+    }
+
+    void put(long key, InvokeFuture future) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.map.put(key, future);
+        }
+    }
+
+    InvokeFuture get(long key) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.map.get(key);
+        }
+    }
+
+    InvokeFuture remove(long key) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.map.remove(key);
+        }
+    }
+
+    /**
+     * 仅当 key 对应的值是 expected 时才移除.
+     */
+    boolean remove(long key, InvokeFuture expected) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            if (stripe.map.get(key) != expected) {
+                return false;
+            }
+            stripe.map.remove(key);
+            return true;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (key ^ (key >>> 32)) & mask];
+    }
+
+    private static final class Stripe {
+
+        final LongObjectHashMap<InvokeFuture> map = new LongObjectHashMap<InvokeFuture>();
+    }
+}
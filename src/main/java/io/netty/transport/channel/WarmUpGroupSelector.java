@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.channel;
+
+import io.netty.util.SystemClock;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 按预热权重在多个 {@link WrapChannelGroup} (通常是同一个服务的多个地址) 之间选择.
+ * <p>
+ * 新连接上的地址在 {@link WrapChannelGroup#getWarmUp()} 时间内权重从 1 线性增长到
+ * {@link #DEFAULT_WEIGHT}, 避免刚启动的JVM一上来就承受全部流量; 没有可用连接的 group 权重为 0.
+ * 预热从 {@link WrapChannelGroup#availableSince()} 开始计算,
+ * 已经有连接的地址上单个连接的重连或者连接池扩缩容不会重新预热.
+ * </p>
+ * <p>
+ * 权重快照每隔 {@code refreshMillis} 或 group 数量变化时由一个调用者重建, 其它调用者继续使用旧快照.
+ * 选择时不加锁, 不分配对象:
+ * 全部预热完成时是 O(1) 的随机选择, 有 group 在预热中时是对累计权重的二分查找.
+ * </p>
+ *
+ * @author Suk
+ */
+public class WarmUpGroupSelector {
+
+    public static final  int      DEFAULT_WEIGHT         = 100;
+    public static final  long     DEFAULT_REFRESH_MILLIS = 100;
+    private static final Snapshot EMPTY                  = new Snapshot(new WrapChannelGroup[0],
+            new int[0], 0, true, 0);
+    private static final AtomicIntegerFieldUpdater<WarmUpGroupSelector> REFRESHING_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(WarmUpGroupSelector.class, "refreshing");
+
+    private final    Collection<WrapChannelGroup> groups;
+    private final    long                         refreshMillis;
+    private volatile Snapshot                     snapshot = EMPTY;
+    @SuppressWarnings("unused")
+    private volatile int                          refreshing = 0; // 0: false, 1: true
+
+    /**
+     * @param groups group 集合, 可以是 {@link io.netty.transport.Connector#groups()} 这样的动态视图
+     */
+    public WarmUpGroupSelector(Collection<WrapChannelGroup> groups) {
+        this(groups, DEFAULT_REFRESH_MILLIS);
+    }
+
+    public WarmUpGroupSelector(Collection<WrapChannelGroup> groups, long refreshMillis) {
+        if (groups == null) {
+            throw new NullPointerException("groups");
+        }
+        this.groups = groups;
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * 按权重选择一个 group.
+     *
+     * @throws IllegalStateException 没有任何 group
+     */
+    public WrapChannelGroup next() {
+        long now = SystemClock.millisClock().now();
+        Snapshot s = snapshot;
+        if (now - s.timestamp >= refreshMillis || s.groups.length != groups.size()) {
+            if (REFRESHING_UPDATER.compareAndSet(this, 0, 1)) {
+                try {
+                    s = refresh(now);
+                } finally {
+                    refreshing = 0;
+                }
+            } else if (s == EMPTY) {
+                // 还没有快照, 不能使用旧的
+                s = refresh(now);
+            }
+        }
+
+        WrapChannelGroup[] elements = s.groups;
+        int length = elements.length;
+        if (length == 0) {
+            throw new IllegalStateException("no group");
+        }
+        if (length == 1) {
+            return elements[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (s.uniform) {
+            return elements[random.nextInt(length)];
+        }
+
+        // 找到第一个累计权重大于 r 的位置
+        int[] cumulative = s.cumulativeWeights;
+        int r = random.nextInt(s.totalWeight);
+        int low = 0;
+        int high = length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > r) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return elements[low];
+    }
+
+    /**
+     * 当前时刻 group 的权重.
+     */
+    public static int weight(WrapChannelGroup group, long now) {
+        if (!group.isAvailable()) {
+            return 0;
+        }
+        int warmUp = group.getWarmUp();
+        long elapsed = now - group.availableSince();
+        if (warmUp <= 0 || elapsed >= warmUp) {
+            return DEFAULT_WEIGHT;
+        }
+        if (elapsed <= 0) {
+            return 1;
+        }
+        return Math.max(1, (int) (DEFAULT_WEIGHT * elapsed / warmUp));
+    }
+
+    private Snapshot refresh(long now) {
+        WrapChannelGroup[] elements = groups.toArray(new WrapChannelGroup[0]);
+        int length = elements.length;
+        int[] cumulative = new int[length];
+        int total = 0;
+        boolean uniform = true;
+        int first = -1;
+        for (int i = 0; i < length; i++) {
+            int w = weight(elements[i], now);
+            if (first < 0) {
+                first = w;
+            } else if (w != first) {
+                uniform = false;
+            }
+            total += w;
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            // 都不可用时退化为均匀选择, 由 group 自己等待可用连接
+            uniform = true;
+        }
+        Snapshot s = new Snapshot(elements, cumulative, total, uniform, now);
+        snapshot = s;
+        return s;
+    }
+
+    private static final class Snapshot {
+
+        final WrapChannelGroup[] groups;
+        final int[]              cumulativeWeights;
+        final int                totalWeight;
+        final boolean            uniform;
+        final long               timestamp;
+
+        Snapshot(WrapChannelGroup[] groups, int[] cumulativeWeights, int totalWeight,
+                 boolean uniform, long timestamp) {
+            this.groups = groups;
+            this.cumulativeWeights = cumulativeWeights;
+            this.totalWeight = totalWeight;
+            this.uniform = uniform;
+            this.timestamp = timestamp;
+        }
+    }
+}
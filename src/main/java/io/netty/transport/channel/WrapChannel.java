@@ -23,11 +23,29 @@
 package io.netty.transport.channel;
 
 import io.netty.channel.*;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.transport.handler.ChunkedFileInput;
+import io.netty.transport.handler.ChunkedProtoInput;
 import io.netty.transport.handler.connector.ConnectionWatchdog;
+import io.netty.transport.handler.connector.ConnectorHandler;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
+import java.io.File;
+import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.IMessage;
+import me.asu.socket.message.ProtoMessage;
 
 /**
  * 对Netty {@link Channel} 的包装, 通过静态方法 {@link #attachChannel(Channel)} 获取一个实例,
@@ -38,6 +56,10 @@ import lombok.extern.slf4j.Slf4j;
 public class WrapChannel {
 
     private static final AttributeKey<WrapChannel>   NETTY_CHANNEL_KEY = AttributeKey.valueOf("netty.channel");
+    private static final AtomicIntegerFieldUpdater<WrapChannel> PENDING_REQUESTS_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(WrapChannel.class, "pendingRequests");
+    private static final AtomicIntegerFieldUpdater<WrapChannel> PAUSE_REASONS_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(WrapChannel.class, "pauseReasons");
     public static        FutureListener<WrapChannel> CLOSE             = new FutureListener<WrapChannel>() {
 
         @Override
@@ -51,8 +73,60 @@ public class WrapChannel {
         }
     };
 
+    /**
+     * 合并写默认的最大待flush消息数.
+     */
+    public static final int DEFAULT_COALESCING_MESSAGES = 64;
+    /**
+     * 合并写默认的最大待flush字节数.
+     */
+    public static final int DEFAULT_COALESCING_BYTES    = 64 * 1024;
+
+    /**
+     * 暂停读取的原因: 写缓冲超过高水位线.
+     */
+    public static final int PAUSE_UNWRITABLE = 1;
+    /**
+     * 暂停读取的原因: 业务线程分发队列已满.
+     */
+    public static final int PAUSE_DISPATCH   = 1 << 1;
+
+    private static final String CHUNKED_WRITER = "chunkedWriter";
+
     private final Channel channel;
 
+    private volatile Invoker invoker;
+    @SuppressWarnings("unused")
+    private volatile int     pendingRequests;
+    private volatile int     pauseReasons;
+    // 通过 Invoker 发出、尚未收到响应的请求, 连接断开时全部失败
+    private final    Set<InvokeFuture> invokeFutures = Collections
+            .newSetFromMap(new ConcurrentHashMap<InvokeFuture, Boolean>());
+    private volatile boolean coalescing;
+    private volatile int     maxPendingMessages = DEFAULT_COALESCING_MESSAGES;
+    private volatile int     maxPendingBytes    = DEFAULT_COALESCING_BYTES;
+    // 以下字段只在IO线程中访问
+    private          int     pendingMessages;
+    private          long    pendingBytes;
+    private          boolean flushScheduled;
+    // do not get a new Runnable per flush to reduce GC pressure.
+    private final    Runnable flushTask = new Runnable() {
+
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flushPending();
+        }
+    };
+
+    private final    Runnable autoReadTask = new Runnable() {
+
+        @Override
+        public void run() {
+            applyAutoRead();
+        }
+    };
+
     private WrapChannel(Channel channel) {
         this.channel = channel;
     }
@@ -118,7 +192,11 @@ public class WrapChannel {
      * @return self {@link WrapChannel}
      */
     public WrapChannel write(Object msg) {
-        channel.writeAndFlush(msg, channel.voidPromise());
+        if (coalescing) {
+            coalesceWrite(msg, channel.voidPromise());
+        } else {
+            channel.writeAndFlush(msg, channel.voidPromise());
+        }
         return this;
     }
 
@@ -131,7 +209,112 @@ public class WrapChannel {
      */
     public WrapChannel write(final Object msg, final FutureListener<WrapChannel> listener) {
         final WrapChannel wrapChannel = this;
-        channel.writeAndFlush(msg).addListener(new ChannelFutureListener() {
+        ChannelFutureListener futureListener = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    listener.operationSuccess(wrapChannel);
+                } else {
+                    listener.operationFailure(wrapChannel, future.cause());
+                }
+            }
+        };
+        if (coalescing) {
+            ChannelPromise promise = channel.newPromise();
+            promise.addListener(futureListener);
+            coalesceWrite(msg, promise);
+        } else {
+            channel.writeAndFlush(msg).addListener(futureListener);
+        }
+        return wrapChannel;
+    }
+
+    /**
+     * 以 chunk 流的方式发送, pipeline 中没有 {@link ChunkedWriteHandler} 时自动添加.
+     *
+     * @param input chunk 流
+     * @return self {@link WrapChannel}
+     * @see io.netty.transport.handler.ChunkedMessageHandler
+     */
+    public WrapChannel writeChunked(ChunkedProtoInput input) {
+        writeChunkedInput(input, input.header());
+        return this;
+    }
+
+    /**
+     * 以 chunk 流的方式发送, 发送完成或失败后回调 listener.
+     *
+     * @param input    chunk 流
+     * @param listener {@link FutureListener}
+     * @return self {@link WrapChannel}
+     */
+    public WrapChannel writeChunked(ChunkedProtoInput input,
+                                    FutureListener<WrapChannel> listener) {
+        return writeChunkedInput(input, input.header(), listener);
+    }
+
+    /**
+     * 以 chunk 流的方式发送文件, 接收端可以使用 {@link io.netty.transport.handler.FileStreamHandler}.
+     * <p>每个 chunk 的 body 是一个 {@link DefaultFileRegion}, native epoll 下使用 sendfile,
+     * 不经过用户态拷贝; pipeline 中有 {@link SslHandler} 时 FileRegion 无法加密,
+     * 改为读取到 ByteBuf 中发送.</p>
+     *
+     * @param header 帧 header 模板, body 被忽略
+     * @param file   文件
+     * @return self {@link WrapChannel}
+     */
+    public WrapChannel writeFile(ProtoMessage header, File file) throws IOException {
+        writeChunkedInput(fileInput(header, file, ChunkedFileInput.DEFAULT_CHUNK_SIZE), header);
+        return this;
+    }
+
+    /**
+     * 以 chunk 流的方式发送文件, 发送完成或失败后回调 listener.
+     *
+     * @param header    帧 header 模板, body 被忽略
+     * @param file      文件
+     * @param chunkSize 每个 chunk 的大小, 加上 header 不能超过接收端的最大帧长
+     * @param listener  {@link FutureListener}
+     * @return self {@link WrapChannel}
+     * @see #writeFile(ProtoMessage, File)
+     */
+    public WrapChannel writeFile(ProtoMessage header, File file, int chunkSize,
+                                 FutureListener<WrapChannel> listener) throws IOException {
+        return writeChunkedInput(fileInput(header, file, chunkSize), header, listener);
+    }
+
+    private ChunkedInput<?> fileInput(ProtoMessage header, File file, int chunkSize)
+            throws IOException {
+        if (channel.pipeline().get(SslHandler.class) != null) {
+            return new ChunkedProtoInput(header, new ChunkedNioFile(file, chunkSize));
+        }
+        return new ChunkedFileInput(header, file, chunkSize);
+    }
+
+    /**
+     * 发送 chunk 流, 失败且通道仍然可用时发送取消帧, 让接收端及时放弃这个流.
+     */
+    private ChannelFuture writeChunkedInput(ChunkedInput<?> input, final ProtoMessage header) {
+        ensureChunkedWriter();
+        ChannelFuture future = channel.writeAndFlush(input);
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess() && channel.isActive()) {
+                    log.warn("发送流失败: {}, seqId: {}, channel: {}。", future.cause(),
+                            header.getHeader().getSeqId(), channel);
+                    channel.writeAndFlush(ChunkedProtoInput.abortFrame(channel.alloc(), header),
+                            channel.voidPromise());
+                }
+            }
+        });
+        return future;
+    }
+
+    private WrapChannel writeChunkedInput(ChunkedInput<?> input, ProtoMessage header,
+                                          final FutureListener<WrapChannel> listener) {
+        final WrapChannel wrapChannel = this;
+        writeChunkedInput(input, header).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
                 if (future.isSuccess()) {
@@ -144,6 +327,126 @@ public class WrapChannel {
         return wrapChannel;
     }
 
+    /**
+     * 添加 {@link ChunkedWriteHandler}, 有 {@link SslHandler} 时放在它之后, 保证 chunk 被加密.
+     */
+    private synchronized void ensureChunkedWriter() {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (pipeline.get(ChunkedWriteHandler.class) != null) {
+            return;
+        }
+        ChannelHandlerContext ssl = pipeline.context(SslHandler.class);
+        if (ssl != null) {
+            pipeline.addAfter(ssl.name(), CHUNKED_WRITER, new ChunkedWriteHandler());
+        } else {
+            pipeline.addFirst(CHUNKED_WRITER, new ChunkedWriteHandler());
+        }
+    }
+
+    /**
+     * 发送请求, 返回响应的 future, 需要 pipeline 中的 {@link ConnectorHandler} 设置了 {@link Invoker}.
+     *
+     * @param request       请求, seqId 会被覆盖
+     * @param timeoutMillis 超时时间
+     * @return 响应的 future
+     */
+    public CompletableFuture<IMessage> invoke(ProtoMessage request, long timeoutMillis) {
+        Invoker invoker = this.invoker;
+        if (invoker == null) {
+            ConnectorHandler handler = channel.pipeline().get(ConnectorHandler.class);
+            if (handler == null || handler.getInvoker() == null) {
+                throw new IllegalStateException("no invoker: " + channel);
+            }
+            this.invoker = invoker = handler.getInvoker();
+        }
+        return invoker.invoke(this, request, timeoutMillis);
+    }
+
+    /**
+     * 开启合并写, 使用默认阈值.
+     *
+     * @return self {@link WrapChannel}
+     * @see #enableWriteCoalescing(int, int)
+     */
+    public WrapChannel enableWriteCoalescing() {
+        return enableWriteCoalescing(DEFAULT_COALESCING_MESSAGES, DEFAULT_COALESCING_BYTES);
+    }
+
+    /**
+     * 开启合并写: {@link #write(Object)} 不再每条消息都flush, 而是在当前event loop的本轮迭代结束前
+     * flush一次, 或者待flush的消息数/字节数达到阈值时立即flush, 以减少系统调用.
+     * 在IO线程外调用也是安全的, 写操作会被提交到IO线程中执行.
+     *
+     * @param maxPendingMessages 最大待flush消息数
+     * @param maxPendingBytes    最大待flush字节数
+     * @return self {@link WrapChannel}
+     */
+    public WrapChannel enableWriteCoalescing(int maxPendingMessages, int maxPendingBytes) {
+        if (maxPendingMessages < 1) {
+            throw new IllegalArgumentException(
+                    "maxPendingMessages: " + maxPendingMessages + " (expected: > 0)");
+        }
+        if (maxPendingBytes < 1) {
+            throw new IllegalArgumentException(
+                    "maxPendingBytes: " + maxPendingBytes + " (expected: > 0)");
+        }
+        this.maxPendingMessages = maxPendingMessages;
+        this.maxPendingBytes = maxPendingBytes;
+        coalescing = true;
+        return this;
+    }
+
+    /**
+     * 关闭合并写, 并flush已经写入的消息.
+     *
+     * @return self {@link WrapChannel}
+     */
+    public WrapChannel disableWriteCoalescing() {
+        coalescing = false;
+        if (inIoThread()) {
+            flushPending();
+        } else {
+            channel.eventLoop().execute(flushTask);
+        }
+        return this;
+    }
+
+    public boolean isWriteCoalescing() {
+        return coalescing;
+    }
+
+    private void coalesceWrite(Object msg, ChannelPromise promise) {
+        if (inIoThread()) {
+            doCoalesceWrite(msg, promise);
+        } else {
+            channel.eventLoop().execute(new CoalesceWriteTask(msg, promise));
+        }
+    }
+
+    private void doCoalesceWrite(Object msg, ChannelPromise promise) {
+        // 写入之后msg可能已经被编码释放, 先计算size
+        int size = channel.config().getMessageSizeEstimator().newHandle().size(msg);
+        channel.write(msg, promise);
+
+        pendingMessages++;
+        if (size > 0) {
+            pendingBytes += size;
+        }
+        if (pendingMessages >= maxPendingMessages || pendingBytes >= maxPendingBytes) {
+            flushPending();
+        } else if (!flushScheduled) {
+            // 提交到任务队列, 在本轮IO事件处理之后执行
+            flushScheduled = true;
+            channel.eventLoop().execute(flushTask);
+        }
+    }
+
+    private void flushPending() {
+        pendingMessages = 0;
+        pendingBytes = 0;
+        channel.flush();
+    }
+
     @Override
     public boolean equals(Object obj) {
         return this == obj || (obj instanceof WrapChannel && channel
@@ -170,6 +473,39 @@ public class WrapChannel {
         return channel.isWritable();
     }
 
+    /**
+     * 距离不可写(高水位线)还可以写入的字节数.
+     */
+    public long bytesBeforeUnwritable() {
+        return channel.bytesBeforeUnwritable();
+    }
+
+    /**
+     * 通过 {@link Invoker} 发出、尚未收到响应的请求数.
+     */
+    public int pendingRequests() {
+        return pendingRequests;
+    }
+
+    void addPendingRequest(InvokeFuture future) {
+        if (invokeFutures.add(future)) {
+            PENDING_REQUESTS_UPDATER.incrementAndGet(this);
+        }
+    }
+
+    void removePendingRequest(InvokeFuture future) {
+        if (invokeFutures.remove(future)) {
+            PENDING_REQUESTS_UPDATER.decrementAndGet(this);
+        }
+    }
+
+    /**
+     * 等待响应的请求快照.
+     */
+    List<InvokeFuture> pendingInvokeFutures() {
+        return new ArrayList<InvokeFuture>(invokeFutures);
+    }
+
     public boolean isMarkedReconnect() {
         ConnectionWatchdog watchdog = channel.pipeline().get(ConnectionWatchdog.class);
         return watchdog != null && watchdog.isStarted();
@@ -183,6 +519,59 @@ public class WrapChannel {
         channel.config().setAutoRead(autoRead);
     }
 
+    /**
+     * 因为 reason 暂停读取, 各个原因互不影响, 所有原因都解除后才恢复读取.
+     *
+     * @param reason 如 {@link #PAUSE_UNWRITABLE}
+     * @return 之前没有因为这个原因暂停时返回 true
+     */
+    public boolean pauseRead(int reason) {
+        for (; ; ) {
+            int reasons = pauseReasons;
+            if ((reasons & reason) == reason) {
+                return false;
+            }
+            if (PAUSE_REASONS_UPDATER.compareAndSet(this, reasons, reasons | reason)) {
+                updateAutoRead();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 解除 reason 引起的暂停, 没有其它原因时恢复读取.
+     *
+     * @param reason 如 {@link #PAUSE_UNWRITABLE}
+     * @return 之前因为这个原因暂停时返回 true
+     */
+    public boolean resumeRead(int reason) {
+        for (; ; ) {
+            int reasons = pauseReasons;
+            if ((reasons & reason) == 0) {
+                return false;
+            }
+            if (PAUSE_REASONS_UPDATER.compareAndSet(this, reasons, reasons & ~reason)) {
+                updateAutoRead();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 在IO线程中按最新的暂停原因设置 autoRead, 多个线程同时暂停/恢复时结果仍然一致.
+     */
+    private void updateAutoRead() {
+        if (inIoThread()) {
+            applyAutoRead();
+        } else {
+            channel.eventLoop().execute(autoReadTask);
+        }
+    }
+
+    private void applyAutoRead() {
+        channel.config().setAutoRead(pauseReasons == 0);
+    }
+
     @Override
     public int hashCode() {
         return channel.hashCode();
@@ -192,4 +581,20 @@ public class WrapChannel {
     public String toString() {
         return channel.toString();
     }
+
+    private final class CoalesceWriteTask implements Runnable {
+
+        private final Object         msg;
+        private final ChannelPromise promise;
+
+        CoalesceWriteTask(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+
+        @Override
+        public void run() {
+            doCoalesceWrite(msg, promise);
+        }
+    }
 }
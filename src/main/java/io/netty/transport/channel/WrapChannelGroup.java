@@ -27,36 +27,46 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.transport.UnresolvedAddress;
 import io.netty.util.SystemClock;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
 import io.netty.util.internal.SystemPropertyUtil;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiConsumer;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-import me.asu.util.AtomicUpdater;
+import me.asu.socket.message.IMessage;
+import me.asu.socket.message.ProtoMessage;
 
 /**
  * @author Suk
  */
 public class WrapChannelGroup {
 
-    private static final AtomicReferenceFieldUpdater<CopyOnWriteArrayList, Object[]> CHANNELS_UPDATER      = AtomicUpdater
-            .newAtomicReferenceFieldUpdater(CopyOnWriteArrayList.class, Object[].class, "array");
+    private static final WrapChannel[]                                               EMPTY_CHANNELS        = new WrapChannel[0];
+    private static final AtomicReferenceFieldUpdater<WrapChannelGroup, WrapChannel[]> CHANNELS_UPDATER      = AtomicReferenceFieldUpdater
+            .newUpdater(WrapChannelGroup.class, WrapChannel[].class, "channels");
     private static final AtomicIntegerFieldUpdater<WrapChannelGroup>                 SIGNAL_NEEDED_UPDATER = AtomicIntegerFieldUpdater
             .newUpdater(WrapChannelGroup.class, "signalNeeded");
     private static final AtomicIntegerFieldUpdater<WrapChannelGroup>                 INDEX_UPDATER         = AtomicIntegerFieldUpdater
             .newUpdater(WrapChannelGroup.class, "index");
     private static       long                                                        LOSS_INTERVAL         = SystemPropertyUtil
             .getLong("jupiter.io.channel.group.loss.interval.millis", TimeUnit.MINUTES.toMillis(5));
-    private final        CopyOnWriteArrayList<WrapChannel>                           channels              = new CopyOnWriteArrayList<WrapChannel>();
     private final        ReentrantLock                                               lock                  = new ReentrantLock();
     private final        Condition                                                   notifyCondition       = lock
             .newCondition();
+    // 等待可用 channel 的异步调用者, 在 add() 时完成
+    private final        Queue<CompletableFuture<WrapChannel>>                       waiters               = new ConcurrentLinkedQueue<CompletableFuture<WrapChannel>>();
 
     private final UnresolvedAddress address;
+    // 不可变的 channel 数组, 修改时复制并CAS替换, 读取时直接作为快照使用
+    private volatile WrapChannel[] channels = EMPTY_CHANNELS;
     // attempts to elide conditional wake-ups when the lock is uncontended.
     @SuppressWarnings({"unused", "FieldCanBeLocal"})
     private volatile int  signalNeeded   = 0; // 0: false, 1: true
@@ -65,7 +75,10 @@ public class WrapChannelGroup {
     private volatile int  capacity       = Integer.MAX_VALUE;
     private volatile int  warmUp         = 600000; // warm-up time
     private volatile long timestamp      = SystemClock.millisClock().now();
+    // 从没有 channel 变为有 channel 的时间, 之后的增减不改变, 作为预热的起点
+    private volatile long availableSince = SystemClock.millisClock().now();
     private volatile long deadlineMillis = -1;
+    private volatile ChannelSelector selector = ChannelSelectors.ROUND_ROBIN;
 
     // 连接断开时自动被移除
     private final ChannelFutureListener remover = new ChannelFutureListener() {
@@ -84,10 +97,14 @@ public class WrapChannelGroup {
         return address;
     }
 
+    /**
+     * 选择一个 channel, 没有可用的 channel 时最多阻塞1秒,
+     * 不能阻塞的线程(event loop 等)请使用 {@link #nextAsync()}.
+     */
     public WrapChannel next() {
         for (; ; ) {
             // snapshot of channels array
-            Object[] elements = CHANNELS_UPDATER.get(channels);
+            WrapChannel[] elements = channels;
             int length = elements.length;
             if (length == 0) {
                 if (waitForAvailable(1000)) {
@@ -97,25 +114,132 @@ public class WrapChannelGroup {
                 throw new IllegalStateException("no channel");
             }
             if (length == 1) {
-                return (WrapChannel) elements[0];
+                return elements[0];
             }
 
-            int index = INDEX_UPDATER.getAndIncrement(this) & Integer.MAX_VALUE;
+            return selector.select(this, elements);
+        }
+    }
+
+    /**
+     * 异步选择一个 channel, 没有可用的 channel 时, 返回的 future 在下一个 channel 加入时完成, 不会阻塞调用线程.
+     * 等待超时请由调用者处理, 取消或超时完成的 future 立即从等待队列中移除.
+     */
+    public CompletableFuture<WrapChannel> nextAsync() {
+        WrapChannel channel = nextOrNull();
+        if (channel != null) {
+            return CompletableFuture.completedFuture(channel);
+        }
+        final CompletableFuture<WrapChannel> future = new CompletableFuture<WrapChannel>();
+        waiters.add(future);
+        future.whenComplete(new BiConsumer<WrapChannel, Throwable>() {
+
+            @Override
+            public void accept(WrapChannel channel, Throwable cause) {
+                waiters.remove(future);
+            }
+        });
+        // 入队之前可能已经有 channel 加入, 再检查一次
+        notifyWaiters();
+        return future;
+    }
+
+    /**
+     * 不阻塞的 {@link #waitForAvailable(long)}, 基于 {@link #nextAsync()}, 由 timer 处理超时.
+     *
+     * @return 在超时前有可用的 channel 时完成为 true, 否则为 false
+     */
+    public CompletableFuture<Boolean> waitForAvailableAsync(long timeoutMillis, Timer timer) {
+        final CompletableFuture<WrapChannel> next = nextAsync();
+        if (next.isDone()) {
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        final CompletableFuture<Boolean> available = new CompletableFuture<Boolean>();
+        final Timeout timeout = timer.newTimeout(new TimerTask() {
+
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                next.cancel(false);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        next.whenComplete(new BiConsumer<WrapChannel, Throwable>() {
+
+            @Override
+            public void accept(WrapChannel channel, Throwable cause) {
+                timeout.cancel();
+                available.complete(cause == null);
+            }
+        });
+        return available;
+    }
 
-            return (WrapChannel) elements[index % length];
+    /**
+     * 选择一个 channel, 没有可用的 channel 时返回 null.
+     */
+    private WrapChannel nextOrNull() {
+        WrapChannel[] elements = channels;
+        int length = elements.length;
+        if (length == 0) {
+            return null;
         }
+        if (length == 1) {
+            return elements[0];
+        }
+        return selector.select(this, elements);
+    }
+
+    private void notifyWaiters() {
+        while (!waiters.isEmpty()) {
+            WrapChannel channel = nextOrNull();
+            if (channel == null) {
+                break;
+            }
+            CompletableFuture<WrapChannel> future = waiters.poll();
+            if (future == null) {
+                break;
+            }
+            // 已经被取消或者超时的 future 直接丢弃
+            future.complete(channel);
+        }
+    }
+
+    /**
+     * 轮询序号, 供 {@link ChannelSelectors#ROUND_ROBIN} 使用.
+     */
+    int nextIndex() {
+        return INDEX_UPDATER.getAndIncrement(this) & Integer.MAX_VALUE;
+    }
+
+    public ChannelSelector getSelector() {
+        return selector;
+    }
+
+    public void setSelector(ChannelSelector selector) {
+        if (selector == null) {
+            throw new NullPointerException("selector");
+        }
+        this.selector = selector;
+    }
+
+    /**
+     * 选择一个 channel 发送请求, 返回响应的 future.
+     *
+     * @see WrapChannel#invoke(ProtoMessage, long)
+     */
+    public CompletableFuture<IMessage> invoke(ProtoMessage request, long timeoutMillis) {
+        return next().invoke(request, timeoutMillis);
     }
 
     public List<? extends WrapChannel> channels() {
-        return new ArrayList<WrapChannel>(channels);
+        return new ArrayList<WrapChannel>(Arrays.asList(channels));
     }
 
     public boolean isEmpty() {
-        return channels.isEmpty();
+        return channels.length == 0;
     }
 
     public boolean add(WrapChannel channel) {
-        boolean added = channel instanceof WrapChannel && channels.add(channel);
+        boolean added = channel instanceof WrapChannel && addChannel(channel);
         if (added) {
             // reset timestamp
             timestamp = SystemClock.millisClock().now();
@@ -123,6 +247,8 @@ public class WrapChannelGroup {
             channel.channel().closeFuture().addListener(remover);
             deadlineMillis = -1;
 
+            notifyWaiters();
+
             if (SIGNAL_NEEDED_UPDATER.getAndSet(this, 0) != 0) {
                 // signal needed: true
                 final ReentrantLock _look = lock;
@@ -139,12 +265,12 @@ public class WrapChannelGroup {
     }
 
     public boolean remove(WrapChannel channel) {
-        boolean removed = channel instanceof WrapChannel && channels.remove(channel);
+        boolean removed = channel instanceof WrapChannel && removeChannel(channel);
         if (removed) {
             // reset timestamp
             timestamp = SystemClock.millisClock().now();
 
-            if (channels.isEmpty()) {
+            if (channels.length == 0) {
                 deadlineMillis = SystemClock.millisClock().now() + LOSS_INTERVAL;
             }
         }
@@ -152,7 +278,54 @@ public class WrapChannelGroup {
     }
 
     public int size() {
-        return channels.size();
+        return channels.length;
+    }
+
+    private boolean addChannel(WrapChannel channel) {
+        for (; ; ) {
+            WrapChannel[] current = channels;
+            if (indexOf(current, channel) >= 0) {
+                return false;
+            }
+            WrapChannel[] update = Arrays.copyOf(current, current.length + 1);
+            update[current.length] = channel;
+            if (CHANNELS_UPDATER.compareAndSet(this, current, update)) {
+                if (current.length == 0) {
+                    availableSince = SystemClock.millisClock().now();
+                }
+                return true;
+            }
+        }
+    }
+
+    private boolean removeChannel(WrapChannel channel) {
+        for (; ; ) {
+            WrapChannel[] current = channels;
+            int index = indexOf(current, channel);
+            if (index < 0) {
+                return false;
+            }
+            WrapChannel[] update;
+            if (current.length == 1) {
+                update = EMPTY_CHANNELS;
+            } else {
+                update = new WrapChannel[current.length - 1];
+                System.arraycopy(current, 0, update, 0, index);
+                System.arraycopy(current, index + 1, update, index, update.length - index);
+            }
+            if (CHANNELS_UPDATER.compareAndSet(this, current, update)) {
+                return true;
+            }
+        }
+    }
+
+    private static int indexOf(WrapChannel[] channels, WrapChannel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i].equals(channel)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public int getCapacity() {
@@ -164,7 +337,7 @@ public class WrapChannelGroup {
     }
 
     public boolean isAvailable() {
-        return !channels.isEmpty();
+        return channels.length != 0;
     }
 
     public boolean waitForAvailable(long timeoutMillis) {
@@ -210,6 +383,13 @@ public class WrapChannelGroup {
         return timestamp;
     }
 
+    /**
+     * 最近一次从没有可用 channel 变为有可用 channel 的时间, 期间的重连和扩缩容不会改变它.
+     */
+    public long availableSince() {
+        return availableSince;
+    }
+
     public long deadlineMillis() {
         return deadlineMillis;
     }
@@ -237,7 +417,7 @@ public class WrapChannelGroup {
     public String toString() {
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
 
-        return "WrapChannelGroup{" + "channels=" + channels + ", warmUp=" + warmUp + ", time="
+        return "WrapChannelGroup{" + "channels=" + Arrays.toString(channels) + ", warmUp=" + warmUp + ", time="
                 + dateFormat.format(new Date(timestamp)) + ", address=" + address + '}';
     }
 }
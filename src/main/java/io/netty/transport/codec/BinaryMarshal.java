@@ -0,0 +1,530 @@
+package io.netty.transport.codec;
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 紧凑的带标签二进制编组, 不需要 schema.
+ * <ul>
+ * <li>每个值以1个字节的标签开头, 整数使用 zigzag varint, 字符串为 varint 长度 + UTF-8.</li>
+ * <li>POJO 只写字段值, 按字段名排序的顺序写入, 不写字段名, 所以两端的类必须一致.
+ * 字段通过反射访问, 每个类只解析一次.</li>
+ * <li>支持基本类型及其包装类, String, byte[], 数组, enum, Date, BigDecimal, BigInteger,
+ * Collection, Map 和 POJO.</li>
+ * <li>读取时所有长度都先与剩余字节数比较后再分配, 嵌套深度不超过 {@link #MAX_DEPTH},
+ * 不可信的输入不会导致过大的分配或者栈溢出.</li>
+ * </ul>
+ *
+ * @author Suk
+ */
+public class BinaryMarshal implements Marshal, StreamMarshal {
+
+    public static final int TYPE = 2;
+
+    static final byte NULL        = 0;
+    static final byte TRUE        = 1;
+    static final byte FALSE       = 2;
+    static final byte BYTE        = 3;
+    static final byte SHORT       = 4;
+    static final byte INT         = 5;
+    static final byte LONG        = 6;
+    static final byte FLOAT       = 7;
+    static final byte DOUBLE      = 8;
+    static final byte CHAR        = 9;
+    static final byte STRING      = 10;
+    static final byte BYTES       = 11;
+    static final byte LIST        = 12;
+    static final byte MAP         = 13;
+    static final byte OBJECT      = 14;
+    static final byte BIG_DECIMAL = 15;
+    static final byte BIG_INTEGER = 16;
+    static final byte DATE        = 17;
+
+    /**
+     * 读取时允许的最大嵌套深度.
+     */
+    public static final int MAX_DEPTH = 64;
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final ConcurrentMap<Class<?>, FieldAccessor[]> fieldCache =
+            new ConcurrentHashMap<Class<?>, FieldAccessor[]>();
+
+    @Override
+    public int type() {
+        return TYPE;
+    }
+
+    @Override
+    public byte[] marshal(Object obj) {
+        ByteBuf buf = Unpooled.buffer(INITIAL_CAPACITY);
+        try {
+            write(buf, obj);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Override
+    public <T> T unmarshal(byte[] bytes, Class<T> type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return unmarshal(Unpooled.wrappedBuffer(bytes), type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unmarshal(ByteBuf in, Class<T> type) {
+        if (!in.isReadable()) {
+            return null;
+        }
+        T result = (T) box(coerce(read(in, type), type), type);
+        // 与其它 StreamMarshal 一致, 消费所有可读的字节
+        in.skipBytes(in.readableBytes());
+        return result;
+    }
+
+    @Override
+    public void marshal(Object obj, ByteBuf out) {
+        write(out, obj);
+    }
+
+    /**
+     * 把 obj 写入 out.
+     */
+    public void write(ByteBuf out, Object obj) {
+        if (obj == null) {
+            out.writeByte(NULL);
+        } else if (obj instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) obj);
+        } else if (obj instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(out, zigzag((Integer) obj));
+        } else if (obj instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigzag((Long) obj));
+        } else if (obj instanceof Boolean) {
+            out.writeByte((Boolean) obj ? TRUE : FALSE);
+        } else if (obj instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) obj);
+        } else if (obj instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) obj);
+        } else if (obj instanceof Short) {
+            out.writeByte(SHORT);
+            writeVarLong(out, zigzag((Short) obj));
+        } else if (obj instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) obj);
+        } else if (obj instanceof Character) {
+            out.writeByte(CHAR);
+            writeVarLong(out, (Character) obj);
+        } else if (obj instanceof byte[]) {
+            byte[] bytes = (byte[]) obj;
+            out.writeByte(BYTES);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (obj instanceof Enum) {
+            out.writeByte(STRING);
+            writeString(out, ((Enum<?>) obj).name());
+        } else if (obj instanceof Date) {
+            out.writeByte(DATE);
+            writeVarLong(out, zigzag(((Date) obj).getTime()));
+        } else if (obj instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, obj.toString());
+        } else if (obj instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, obj.toString());
+        } else if (obj instanceof Collection) {
+            Collection<?> collection = (Collection<?>) obj;
+            out.writeByte(LIST);
+            writeVarLong(out, collection.size());
+            for (Object o : collection) {
+                write(out, o);
+            }
+        } else if (obj.getClass().isArray()) {
+            int length = Array.getLength(obj);
+            out.writeByte(LIST);
+            writeVarLong(out, length);
+            for (int i = 0; i < length; i++) {
+                write(out, Array.get(obj, i));
+            }
+        } else if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            out.writeByte(MAP);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else {
+            FieldAccessor[] fields = fields(obj.getClass());
+            out.writeByte(OBJECT);
+            writeVarLong(out, fields.length);
+            for (FieldAccessor field : fields) {
+                write(out, field.get(obj));
+            }
+        }
+    }
+
+    /**
+     * 从 in 中读取一个值, type 为目标类型, 可以是 {@link ParameterizedType}.
+     */
+    public Object read(ByteBuf in, Type type) {
+        return read(in, type, 0);
+    }
+
+    private Object read(ByteBuf in, Type type, int depth) {
+        byte tag = in.readByte();
+        Class<?> raw = rawType(type);
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return (short) unzigzag(readVarLong(in));
+            case INT:
+                return (int) unzigzag(readVarLong(in));
+            case LONG:
+                return unzigzag(readVarLong(in));
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case CHAR:
+                return (char) readVarLong(in);
+            case STRING:
+                String s = readString(in);
+                if (raw != null && raw.isEnum()) {
+                    return enumValue(raw, s);
+                }
+                return s;
+            case BYTES:
+                byte[] bytes = new byte[readLength(in, 1)];
+                in.readBytes(bytes);
+                return bytes;
+            case DATE:
+                return new Date(unzigzag(readVarLong(in)));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case LIST:
+                // 每个元素至少有1个字节的标签
+                return readList(in, type, raw, readLength(in, 1), checkDepth(depth));
+            case MAP:
+                return readMap(in, type, raw, readLength(in, 2), checkDepth(depth));
+            case OBJECT:
+                return readObject(in, raw, readLength(in, 1), checkDepth(depth));
+            default:
+                throw new IllegalArgumentException("unknown tag: " + tag);
+        }
+    }
+
+    private static int checkDepth(int depth) {
+        if (++depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("nesting too deep: " + depth);
+        }
+        return depth;
+    }
+
+    private Object readList(ByteBuf in, Type type, Class<?> raw, int size, int depth) {
+        if (raw != null && raw.isArray()) {
+            Class<?> component = raw.getComponentType();
+            Object array = Array.newInstance(component, size);
+            for (int i = 0; i < size; i++) {
+                Array.set(array, i,
+                        box(coerce(read(in, component, depth), component), component));
+            }
+            return array;
+        }
+        Type elementType = typeArgument(type, 0);
+        Collection<Object> collection;
+        if (raw != null && Set.class.isAssignableFrom(raw)) {
+            collection = new LinkedHashSet<Object>(size << 1);
+        } else {
+            collection = new ArrayList<Object>(size);
+        }
+        for (int i = 0; i < size; i++) {
+            collection.add(read(in, elementType, depth));
+        }
+        return collection;
+    }
+
+    private Object readMap(ByteBuf in, Type type, Class<?> raw, int size, int depth) {
+        Type keyType = typeArgument(type, 0);
+        Type valueType = typeArgument(type, 1);
+        Map<Object, Object> map;
+        if (raw != null && SortedMap.class.isAssignableFrom(raw)) {
+            map = new TreeMap<Object, Object>();
+        } else {
+            map = new LinkedHashMap<Object, Object>(size << 1);
+        }
+        for (int i = 0; i < size; i++) {
+            Object key = read(in, keyType, depth);
+            map.put(key, read(in, valueType, depth));
+        }
+        return map;
+    }
+
+    private Object readObject(ByteBuf in, Class<?> raw, int size, int depth) {
+        if (raw == null || raw == Object.class) {
+            throw new IllegalArgumentException("target type is required for object");
+        }
+        FieldAccessor[] fields = fields(raw);
+        if (fields.length != size) {
+            throw new IllegalArgumentException(
+                    raw.getName() + " expected " + fields.length + " fields, but was " + size);
+        }
+        Object obj = newInstance(raw);
+        for (FieldAccessor field : fields) {
+            field.set(obj, read(in, field.genericType, depth));
+        }
+        return obj;
+    }
+
+    private FieldAccessor[] fields(Class<?> clazz) {
+        FieldAccessor[] fields = fieldCache.get(clazz);
+        if (fields == null) {
+            List<Field> list = new ArrayList<Field>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    int modifiers = f.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                            || f.isSynthetic()) {
+                        continue;
+                    }
+                    f.setAccessible(true);
+                    list.add(f);
+                }
+            }
+            Collections.sort(list, new Comparator<Field>() {
+
+                @Override
+                public int compare(Field a, Field b) {
+                    int c = a.getName().compareTo(b.getName());
+                    return c != 0 ? c
+                            : a.getDeclaringClass().getName()
+                               .compareTo(b.getDeclaringClass().getName());
+                }
+            });
+            fields = new FieldAccessor[list.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new FieldAccessor(list.get(i));
+            }
+            FieldAccessor[] old = fieldCache.putIfAbsent(clazz, fields);
+            if (old != null) {
+                fields = old;
+            }
+        }
+        return fields;
+    }
+
+    private static Object newInstance(Class<?> clazz) {
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("can not create " + clazz.getName(), e);
+        }
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            Class<?> component = rawType(((GenericArrayType) type).getGenericComponentType());
+            return component == null ? null : Array.newInstance(component, 0).getClass();
+        }
+        return null;
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < args.length) {
+                return args[index];
+            }
+        }
+        return Object.class;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    /**
+     * 基本类型字段不能设置为 null.
+     */
+    private static Object box(Object value, Class<?> type) {
+        if (value != null || !type.isPrimitive()) {
+            return value;
+        }
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0F;
+        }
+        if (type == double.class) {
+            return 0D;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    private static void writeString(ByteBuf out, String s) {
+        int length = ByteBufUtil.utf8Bytes(s);
+        writeVarLong(out, length);
+        ByteBufUtil.reserveAndWriteUtf8(out, s, length);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readLength(in, 1);
+        String s = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+        in.skipBytes(length);
+        return s;
+    }
+
+    /**
+     * 读取长度或元素个数, 每个单位至少占 unitBytes 个字节, 超过剩余字节数说明数据非法.
+     */
+    private static int readLength(ByteBuf in, int unitBytes) {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.readableBytes() / unitBytes) {
+            throw new IllegalArgumentException(
+                    "length " + length + " exceeds readable bytes " + in.readableBytes());
+        }
+        return (int) length;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryMarshal{type:2}";
+    }
+
+    private static final class FieldAccessor {
+
+        private final Field    field;
+        private final Type     genericType;
+        private final Class<?> type;
+
+        FieldAccessor(Field field) {
+            this.field = field;
+            this.genericType = field.getGenericType();
+            this.type = field.getType();
+        }
+
+        Object get(Object obj) {
+            try {
+                return field.get(obj);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void set(Object obj, Object value) {
+            try {
+                field.set(obj, box(coerce(value, type), type));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 数值类型之间的转换, 例如 int 字段读到了 short.
+     */
+    private static Object coerce(Object value, Class<?> type) {
+        if (!(value instanceof Number) || type.isInstance(value)) {
+            return value;
+        }
+        Number n = (Number) value;
+        if (type == int.class || type == Integer.class) {
+            return n.intValue();
+        }
+        if (type == long.class || type == Long.class) {
+            return n.longValue();
+        }
+        if (type == short.class || type == Short.class) {
+            return n.shortValue();
+        }
+        if (type == byte.class || type == Byte.class) {
+            return n.byteValue();
+        }
+        if (type == double.class || type == Double.class) {
+            return n.doubleValue();
+        }
+        if (type == float.class || type == Float.class) {
+            return n.floatValue();
+        }
+        if (type == Date.class) {
+            return new Date(n.longValue());
+        }
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.codec;
+
+/**
+ * header 中 bodyType 的位定义.
+ * <code><pre>
+ *      |  7  6  |  5    |  4  3  2  1  0  |
+ *      | 压缩算法 | chunk | 编组类型(Marshal) |
+ * </pre></code>
+ * 没有设置任何标志位时与原来的 bodyType 完全一致.
+ *
+ * @author Suk
+ */
+public final class BodyTypes {
+
+    /**
+     * 编组类型, 见 {@link Marshal#type()}.
+     */
+    public static final int MARSHAL_MASK     = 0x1F;
+    /**
+     * 压缩算法.
+     */
+    public static final int COMPRESS_MASK    = 0xC0;
+    public static final int COMPRESS_NONE    = 0x00;
+    public static final int COMPRESS_SNAPPY  = 0x40;
+    public static final int COMPRESS_DEFLATE = 0x80;
+    /**
+     * chunk 帧, 同一个 seqId 的 chunk 组成一个流, 空 body 的 chunk 表示流结束.
+     */
+    public static final int CHUNK_FLAG       = 0x20;
+
+    private BodyTypes() {
+    }
+
+    public static int marshalType(byte bodyType) {
+        return bodyType & MARSHAL_MASK;
+    }
+
+    public static int compression(byte bodyType) {
+        return bodyType & COMPRESS_MASK;
+    }
+
+    public static boolean isChunk(byte bodyType) {
+        return (bodyType & CHUNK_FLAG) != 0;
+    }
+
+    public static byte withChunk(byte bodyType) {
+        return (byte) (bodyType | CHUNK_FLAG);
+    }
+
+    public static byte withCompression(byte bodyType, int compression) {
+        return (byte) ((bodyType & ~COMPRESS_MASK) | (compression & COMPRESS_MASK));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.compression.Snappy;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * body 压缩, 算法由 bodyType 的 {@link BodyTypes#COMPRESS_MASK} 位指定.
+ * <p>
+ * 压缩后的 body 格式: 4字节原始长度 + 压缩数据.
+ * Snappy 使用 Netty 的纯 Java 实现, 速度快, 适合默认使用; Deflate 压缩率更高.
+ * Netty 的 Snappy 编码器只支持不超过 {@link #SNAPPY_BLOCK_SIZE} 的输入 (与 SnappyFrameEncoder 相同),
+ * 所以 Snappy 的压缩数据由多个块组成, 每块是4字节压缩长度 + 压缩数据.
+ * 压缩器和 Deflate 使用的数组按线程缓存, 可以在任意线程中调用, 不产生与 body 大小相关的垃圾.
+ *
+ * @author Suk
+ */
+public final class Compression {
+
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Snappy 每块的最大原始长度.
+     */
+    static final int SNAPPY_BLOCK_SIZE = Short.MAX_VALUE;
+
+    private static final FastThreadLocal<Snappy>   SNAPPY   = new FastThreadLocal<Snappy>() {
+
+        @Override
+        protected Snappy initialValue() throws Exception {
+            return new Snappy();
+        }
+    };
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<Deflater>() {
+
+        @Override
+        protected Deflater initialValue() throws Exception {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+
+        @Override
+        protected void onRemoval(Deflater value) throws Exception {
+            value.end();
+        }
+    };
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() throws Exception {
+            return new Inflater();
+        }
+
+        @Override
+        protected void onRemoval(Inflater value) throws Exception {
+            value.end();
+        }
+    };
+    private static final FastThreadLocal<byte[]>   BUFFER   = new FastThreadLocal<byte[]>() {
+
+        @Override
+        protected byte[] initialValue() throws Exception {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final FastThreadLocal<byte[]>   INPUT_BUFFER = new FastThreadLocal<byte[]>() {
+
+        @Override
+        protected byte[] initialValue() throws Exception {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private Compression() {
+    }
+
+    /**
+     * 压缩 in 中所有可读的字节, 写入 out, 包括4字节的原始长度.
+     */
+    public static void compress(int compression, ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        out.writeInt(length);
+        switch (compression) {
+            case BodyTypes.COMPRESS_SNAPPY:
+                snappyEncode(in, out);
+                break;
+            case BodyTypes.COMPRESS_DEFLATE:
+                deflate(in, out);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported compression: " + compression);
+        }
+    }
+
+    /**
+     * 压缩 length 字节时最坏情况下的输出长度, 包括原始长度和 Snappy 每块的长度.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 6 + 64 + (length / SNAPPY_BLOCK_SIZE) * 64;
+    }
+
+    /**
+     * 原始长度, 即压缩数据的前4个字节.
+     */
+    public static int rawLength(ByteBuf in) {
+        return in.getInt(in.readerIndex());
+    }
+
+    /**
+     * 解压 in 中所有可读的字节(包括4字节的原始长度), 写入 out.
+     */
+    public static void decompress(int compression, ByteBuf in, ByteBuf out)
+            throws DataFormatException {
+        int length = in.readInt();
+        out.ensureWritable(length);
+        switch (compression) {
+            case BodyTypes.COMPRESS_SNAPPY:
+                int start = out.writerIndex();
+                snappyDecode(in, out);
+                if (out.writerIndex() - start != length) {
+                    throw new DataFormatException("expected " + length + " bytes, but was "
+                            + (out.writerIndex() - start));
+                }
+                break;
+            case BodyTypes.COMPRESS_DEFLATE:
+                inflate(in, out, length);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported compression: " + compression);
+        }
+    }
+
+    private static void snappyEncode(ByteBuf in, ByteBuf out) {
+        Snappy snappy = SNAPPY.get();
+        while (in.isReadable()) {
+            int n = Math.min(in.readableBytes(), SNAPPY_BLOCK_SIZE);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            try {
+                // 编码器按从0开始的下标处理输入, 必须传入 slice
+                snappy.encode(in.readSlice(n), out, n);
+            } finally {
+                snappy.reset();
+            }
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    private static void snappyDecode(ByteBuf in, ByteBuf out) throws DataFormatException {
+        Snappy snappy = SNAPPY.get();
+        while (in.isReadable()) {
+            if (in.readableBytes() < 4) {
+                throw new DataFormatException("truncated snappy block");
+            }
+            int n = in.readInt();
+            if (n < 0 || n > in.readableBytes()) {
+                throw new DataFormatException("illegal snappy block length: " + n);
+            }
+            try {
+                snappy.decode(in.readSlice(n), out);
+            } finally {
+                snappy.reset();
+            }
+        }
+    }
+
+    private static void deflate(ByteBuf in, ByteBuf out) {
+        Deflater deflater = DEFLATER.get();
+        byte[] input = INPUT_BUFFER.get();
+        byte[] output = BUFFER.get();
+        try {
+            while (!deflater.finished()) {
+                if (deflater.needsInput()) {
+                    if (in.isReadable()) {
+                        setInput(deflater, in, input);
+                    } else {
+                        deflater.finish();
+                    }
+                }
+                int n = deflater.deflate(output);
+                out.writeBytes(output, 0, n);
+            }
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    private static void inflate(ByteBuf in, ByteBuf out, int length)
+            throws DataFormatException {
+        Inflater inflater = INFLATER.get();
+        byte[] input = INPUT_BUFFER.get();
+        byte[] output = BUFFER.get();
+        int remaining = length;
+        try {
+            while (remaining > 0 && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!in.isReadable()) {
+                        break;
+                    }
+                    setInput(inflater, in, input);
+                }
+                if (inflater.needsDictionary()) {
+                    break;
+                }
+                int n = inflater.inflate(output, 0, Math.min(output.length, remaining));
+                out.writeBytes(output, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            inflater.reset();
+        }
+        if (remaining != 0) {
+            throw new DataFormatException("expected " + length + " bytes, but was "
+                    + (length - remaining));
+        }
+    }
+
+    /**
+     * heap buffer 直接使用底层数组, direct buffer 分段拷贝到线程缓存的数组中, 不产生垃圾.
+     */
+    private static void setInput(Deflater deflater, ByteBuf in, byte[] input) {
+        if (in.hasArray()) {
+            int length = in.readableBytes();
+            deflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+            in.skipBytes(length);
+        } else {
+            int length = Math.min(in.readableBytes(), input.length);
+            in.readBytes(input, 0, length);
+            deflater.setInput(input, 0, length);
+        }
+    }
+
+    private static void setInput(Inflater inflater, ByteBuf in, byte[] input) {
+        if (in.hasArray()) {
+            int length = in.readableBytes();
+            inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+            in.skipBytes(length);
+        } else {
+            int length = Math.min(in.readableBytes(), input.length);
+            in.readBytes(input, 0, length);
+            inflater.setInput(input, 0, length);
+        }
+    }
+}
@@ -1,18 +1,25 @@
 package io.netty.transport.codec;
 
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.util.CharsetUtil;
+import java.io.IOException;
 import me.asu.util.Bytes;
 
 /**
  * JsonMarshal.
+ * <p>{@link StreamMarshal} 的实现把 fastjson 的输出直接写入 {@link ByteBufOutputStream},
+ * 读取时直接解析 ByteBuf 的内容, 不产生中间的 String.</p>
  * <p>2017 Suk All rights reserved.</p>
  *
  * @author Suk
  * @version 1.0.0
  * @since 2017-09-25 13:57
  */
-public class JsonMarshal implements Marshal {
+public class JsonMarshal implements Marshal, StreamMarshal {
 
     @Override
     public int type() {
@@ -36,6 +43,40 @@ public class JsonMarshal implements Marshal {
         return JSONObject.parseObject(Bytes.toString(bytes), type);
     }
 
+    @Override
+    public void marshal(Object obj, ByteBuf out) {
+        if (obj == null) {
+            return;
+        }
+        if (obj instanceof String) {
+            out.writeCharSequence((String) obj, CharsetUtil.UTF_8);
+            return;
+        }
+        try {
+            JSON.writeJSONString(new ByteBufOutputStream(out), obj);
+        } catch (IOException e) {
+            // ByteBufOutputStream 不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public <T> T unmarshal(ByteBuf in, Class<T> type) {
+        int length = in.readableBytes();
+        if (length == 0) {
+            return null;
+        }
+        if (in.hasArray()) {
+            T result = JSON.parseObject(in.array(), in.arrayOffset() + in.readerIndex(), length,
+                    CharsetUtil.UTF_8, type);
+            in.skipBytes(length);
+            return result;
+        }
+        byte[] bytes = new byte[length];
+        in.readBytes(bytes);
+        return JSON.parseObject(bytes, 0, length, CharsetUtil.UTF_8, type);
+    }
+
     @Override
     public String toString() {
         return "JsonMarshal{type:1}";
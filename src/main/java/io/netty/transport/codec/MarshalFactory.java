@@ -22,13 +22,20 @@
 
 package io.netty.transport.codec;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import java.util.Iterator;
 import java.util.ServiceLoader;
-import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * MarshalFactory.
+ * <p>按 type 索引的数组, type 即 header 中 bodyType 的编组位(见 {@link BodyTypes#MARSHAL_MASK}),
+ * 取值范围 [0, 31].
+ * 查找不需要装箱和哈希, 注册时复制整个数组(copy-on-write).</p>
+ * <p>同时支持 byte[] 的 {@link Marshal} 和直接读写 ByteBuf 的 {@link StreamMarshal},
+ * 只实现了其中一种的, 另一种由适配器提供.</p>
  * <p>2017 Suk All rights reserved.</p>
  *
  * @author Suk
@@ -38,7 +45,13 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MarshalFactory {
 
-    private static ConcurrentHashMap<Integer, Marshal> cache = new ConcurrentHashMap<Integer, Marshal>();
+    /**
+     * type 的最大值 + 1.
+     */
+    public static final int MAX_TYPES = BodyTypes.MARSHAL_MASK + 1;
+
+    private static volatile Marshal[]       marshals       = new Marshal[MAX_TYPES];
+    private static volatile StreamMarshal[] streamMarshals = new StreamMarshal[MAX_TYPES];
 
     static {
         ServiceLoader<Marshal> loader = ServiceLoader.load(Marshal.class);
@@ -53,19 +66,121 @@ public class MarshalFactory {
         if (marshal == null) {
             return;
         }
-        int type = marshal.type();
-        if (cache.containsKey(type)) {
+        StreamMarshal stream = marshal instanceof StreamMarshal ? (StreamMarshal) marshal
+                : new StreamMarshalAdapter(marshal);
+        register(marshal.type(), marshal, stream);
+    }
+
+    public static void addMarshal(StreamMarshal marshal) {
+        if (marshal == null) {
+            return;
+        }
+        Marshal bytes = marshal instanceof Marshal ? (Marshal) marshal
+                : new MarshalAdapter(marshal);
+        register(marshal.type(), bytes, marshal);
+    }
+
+    private static synchronized void register(int type, Marshal marshal, StreamMarshal stream) {
+        if (type < 0 || type >= MAX_TYPES) {
+            throw new IllegalArgumentException(
+                    "Marshal type: " + type + " (expected: 0-" + (MAX_TYPES - 1) + ")");
+        }
+        Marshal[] update = marshals.clone();
+        StreamMarshal[] streamUpdate = streamMarshals.clone();
+        if (update[type] != null) {
             log.warn("Marshal(type={}) 已经存在，将用新的Marshal替换。", type);
         }
-        cache.put(type, marshal);
+        update[type] = marshal;
+        streamUpdate[type] = stream;
+        marshals = update;
+        streamMarshals = streamUpdate;
     }
 
     public static Marshal get(int type) {
-        Marshal marshal = cache.get(type);
+        Marshal marshal = type >= 0 && type < MAX_TYPES ? marshals[type] : null;
+        if (marshal == null) {
+            throw new UnsupportedOperationException("Not implement yet!");
+        }
+        return marshal;
+    }
+
+    public static StreamMarshal getStream(int type) {
+        StreamMarshal marshal = type >= 0 && type < MAX_TYPES ? streamMarshals[type] : null;
         if (marshal == null) {
             throw new UnsupportedOperationException("Not implement yet!");
         }
         return marshal;
     }
 
+    /**
+     * 用 byte[] 的 {@link Marshal} 实现 {@link StreamMarshal}.
+     */
+    private static final class StreamMarshalAdapter implements StreamMarshal {
+
+        private final Marshal marshal;
+
+        StreamMarshalAdapter(Marshal marshal) {
+            this.marshal = marshal;
+        }
+
+        @Override
+        public int type() {
+            return marshal.type();
+        }
+
+        @Override
+        public void marshal(Object obj, ByteBuf out) {
+            out.writeBytes(marshal.marshal(obj));
+        }
+
+        @Override
+        public <T> T unmarshal(ByteBuf in, Class<T> type) {
+            byte[] bytes = new byte[in.readableBytes()];
+            in.readBytes(bytes);
+            return marshal.unmarshal(bytes, type);
+        }
+
+        @Override
+        public String toString() {
+            return marshal.toString();
+        }
+    }
+
+    /**
+     * 用 {@link StreamMarshal} 实现 byte[] 的 {@link Marshal}.
+     */
+    private static final class MarshalAdapter implements Marshal {
+
+        private final StreamMarshal marshal;
+
+        MarshalAdapter(StreamMarshal marshal) {
+            this.marshal = marshal;
+        }
+
+        @Override
+        public int type() {
+            return marshal.type();
+        }
+
+        @Override
+        public byte[] marshal(Object obj) {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                marshal.marshal(obj, buf);
+                return ByteBufUtil.getBytes(buf);
+            } finally {
+                buf.release();
+            }
+        }
+
+        @Override
+        public <T> T unmarshal(byte[] t, Class<T> type) {
+            return marshal.unmarshal(Unpooled.wrappedBuffer(t), type);
+        }
+
+        @Override
+        public String toString() {
+            return marshal.toString();
+        }
+    }
 }
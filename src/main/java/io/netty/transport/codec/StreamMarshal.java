@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.codec;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 直接读写 {@link ByteBuf} 的编组, 不经过中间的 byte[].
+ *
+ * @author Suk
+ * @see MarshalFactory#getStream(int)
+ */
+public interface StreamMarshal {
+
+    /**
+     * 数据类型.
+     *
+     * @return type
+     */
+    int type();
+
+    /**
+     * 编组, 从 out 的 writerIndex 开始写入.
+     *
+     * @param obj Object
+     * @param out 输出
+     */
+    void marshal(Object obj, ByteBuf out);
+
+    /**
+     * 反编组, 消费 in 中所有可读的字节, 返回后 in 的 readerIndex 等于 writerIndex.
+     * 需要保留 readerIndex 时请传入 {@link ByteBuf#duplicate()}.
+     *
+     * @param in   数据
+     * @param type 类型
+     * @param <T>  范型
+     * @return 对象实例
+     */
+    <T> T unmarshal(ByteBuf in, Class<T> type);
+}
@@ -72,7 +72,10 @@ public class MessageSizeEstimator implements io.netty.channel.MessageSizeEstimat
                 return ((ByteBufHolder) msg).content().readableBytes();
             }
             if (msg instanceof FileRegion) {
-                return 0;
+                // 计入水位线, 否则文件传输会绕过写缓冲的流控
+                FileRegion region = (FileRegion) msg;
+                long remaining = region.count() - region.transferred();
+                return (int) Math.min(remaining, Integer.MAX_VALUE);
             }
             if (msg instanceof ProtoMessage) {
                 return ((ProtoMessage) msg).getPackageLength();
@@ -20,4 +20,8 @@ public class IOSignals {
      * Protocol body 太大
      */
     public static final Signal BODY_TOO_LARGE = Signal.valueOf(IOSignals.class, "BODY_TOO_LARGE");
+    /**
+     * 同时进行的 chunk 流太多
+     */
+    public static final Signal TOO_MANY_STREAMS = Signal.valueOf(IOSignals.class, "TOO_MANY_STREAMS");
 }
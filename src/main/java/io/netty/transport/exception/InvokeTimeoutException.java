@@ -0,0 +1,25 @@
+package io.netty.transport.exception;
+
+/**
+ * 请求等待响应超时.
+ */
+public class InvokeTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 4385012877693205491L;
+
+    public InvokeTimeoutException() {
+        super();
+    }
+
+    public InvokeTimeoutException(String message) {
+        super(message);
+    }
+
+    public InvokeTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvokeTimeoutException(Throwable cause) {
+        super(cause);
+    }
+}
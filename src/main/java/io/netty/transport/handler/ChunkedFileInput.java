@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AbstractReferenceCounted;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 以 chunk 流的方式发送文件, 与 {@link ChunkedProtoInput} 的帧格式相同,
+ * 但 body 是 {@link DefaultFileRegion}, native epoll 下使用 sendfile 零拷贝发送.
+ * <p>依次产生 chunk header 和对应的 FileRegion, 由 {@link ChunkedWriteHandler} 在通道可写时写出,
+ * 最后是一个空 body 的结束帧. FileRegion 不能经过 SslHandler, TLS 下请使用
+ * {@link ChunkedProtoInput} 包装 {@link io.netty.handler.stream.ChunkedNioFile}.</p>
+ * <p>文件在构造时打开一次, 所有 FileRegion 共用同一个 {@link FileChannel}, 在 {@link #close()}
+ * 并且所有 FileRegion 都释放之后关闭. 创建之后必须写出或者调用 {@link #close()}.</p>
+ *
+ * @author Suk
+ */
+@Slf4j
+public class ChunkedFileInput implements ChunkedInput<Object> {
+
+    /**
+     * 默认的 chunk 大小, 加上 header 不超过 {@link ProtoMessageDecoder} 默认的最大帧长.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 60 * 1024;
+
+    private final ProtoMessage header;
+    private final File         file;
+    private final SharedFile   sharedFile;
+    private final long         offset;
+    private final long         length;
+    private final int          chunkSize;
+    private       long         position;
+    private       FileRegion   pendingRegion;
+    private       boolean      endOfInput;
+    private       boolean      closed;
+
+    public ChunkedFileInput(ProtoMessage header, File file) throws FileNotFoundException {
+        this(header, file, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedFileInput(ProtoMessage header, File file, int chunkSize)
+            throws FileNotFoundException {
+        this(header, file, 0, file.length(), chunkSize);
+    }
+
+    /**
+     * @param header    帧 header 模板, body 被忽略
+     * @param file      文件
+     * @param offset    开始位置
+     * @param length    发送的字节数
+     * @param chunkSize 每个 chunk 的大小
+     */
+    public ChunkedFileInput(ProtoMessage header, File file, long offset, long length,
+                            int chunkSize) throws FileNotFoundException {
+        if (header == null) {
+            throw new NullPointerException("header");
+        }
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset: " + offset + ", length: " + length);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: > 0)");
+        }
+        this.header = header;
+        this.file = file;
+        this.sharedFile = new SharedFile(file, new RandomAccessFile(file, "r"));
+        this.offset = offset;
+        this.length = length;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return endOfInput && pendingRegion == null;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (pendingRegion != null) {
+            pendingRegion.release();
+            pendingRegion = null;
+        }
+        if (!closed) {
+            closed = true;
+            // 还没有写完的 FileRegion 持有引用, 全部释放后才真正关闭文件
+            sharedFile.release();
+        }
+    }
+
+    @Deprecated
+    @Override
+    public Object readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public Object readChunk(ByteBufAllocator allocator) throws Exception {
+        if (pendingRegion != null) {
+            FileRegion region = pendingRegion;
+            pendingRegion = null;
+            return region;
+        }
+        if (endOfInput) {
+            return null;
+        }
+        if (position < length) {
+            int n = (int) Math.min(chunkSize, length - position);
+            if (sharedFile.channel.size() < offset + position + n) {
+                throw new IOException("文件在发送过程中被截断: " + file);
+            }
+            pendingRegion = new SharedFileRegion(sharedFile, offset + position, n);
+            position += n;
+            return ChunkedProtoInput.chunkHeader(allocator, header, n);
+        }
+        endOfInput = true;
+        return ChunkedProtoInput.chunkHeader(allocator, header, 0);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return position;
+    }
+
+    /**
+     * 共享的文件, 引用计数归零时关闭.
+     */
+    private static final class SharedFile extends AbstractReferenceCounted {
+
+        final File             file;
+        final RandomAccessFile raf;
+        final FileChannel      channel;
+
+        SharedFile(File file, RandomAccessFile raf) {
+            this.file = file;
+            this.raf = raf;
+            this.channel = raf.getChannel();
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.warn("关闭文件出错: {}, {}。", file, e.getMessage());
+            }
+        }
+
+        @Override
+        public SharedFile touch(Object hint) {
+            return this;
+        }
+    }
+
+    /**
+     * 使用共享 {@link FileChannel} 的 FileRegion, 释放时只减少文件的引用计数.
+     * 仍然是 {@link DefaultFileRegion}, native epoll 下可以使用 sendfile.
+     */
+    private static final class SharedFileRegion extends DefaultFileRegion {
+
+        private final SharedFile sharedFile;
+
+        SharedFileRegion(SharedFile sharedFile, long position, long count) {
+            super(sharedFile.channel, position, count);
+            this.sharedFile = sharedFile;
+            sharedFile.retain();
+        }
+
+        @Override
+        protected void deallocate() {
+            sharedFile.release();
+        }
+    }
+}
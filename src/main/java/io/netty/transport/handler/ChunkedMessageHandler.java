@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.exception.IOSignals;
+import io.netty.transport.exception.Signal;
+import io.netty.transport.message.ByteBufProtoMessage;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.IntObjectMap.PrimitiveEntry;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 接收 {@link ChunkedProtoInput} 发送的 chunk 流, 每个 chunk 到达时立即交给 {@link StreamHandler},
+ * 不做聚合, 每个连接的内存占用只与帧长有关.
+ * <p>放在 {@link ProtoMessageDecoder} 之后, 不是 chunk 的消息原样传给下一个 handler.
+ * 每个通道一个实例, 不能共享.</p>
+ * <p>收到发送端的取消帧, 或者超过 streamIdleTimeout 没有收到新的 chunk 时, 流被放弃, 释放占用的名额.</p>
+ *
+ * @author Suk
+ */
+@Slf4j
+public class ChunkedMessageHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * 默认的每个连接最多同时进行的流.
+     */
+    public static final int  DEFAULT_MAX_STREAMS                 = 16;
+    /**
+     * 默认的流空闲超时时间.
+     */
+    public static final long DEFAULT_STREAM_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+    private final StreamHandler        streamHandler;
+    private final int                  maxStreams;
+    private final long                 streamIdleTimeoutMillis;
+    private final IntObjectMap<Stream> streams = new IntObjectHashMap<Stream>();
+    private final Runnable             sweepTask = new Runnable() {
+
+        @Override
+        public void run() {
+            sweepFuture = null;
+            sweep();
+        }
+    };
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?>    sweepFuture;
+
+    public ChunkedMessageHandler(StreamHandler streamHandler) {
+        this(streamHandler, DEFAULT_MAX_STREAMS);
+    }
+
+    public ChunkedMessageHandler(StreamHandler streamHandler, int maxStreams) {
+        this(streamHandler, maxStreams, DEFAULT_STREAM_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param streamHandler           流的回调
+     * @param maxStreams              每个连接最多同时进行的流
+     * @param streamIdleTimeoutMillis 流超过这个时间没有收到 chunk 时被放弃
+     */
+    public ChunkedMessageHandler(StreamHandler streamHandler, int maxStreams,
+                                 long streamIdleTimeoutMillis) {
+        if (streamHandler == null) {
+            throw new NullPointerException("streamHandler");
+        }
+        if (maxStreams < 1) {
+            throw new IllegalArgumentException("maxStreams: " + maxStreams + " (expected: > 0)");
+        }
+        if (streamIdleTimeoutMillis < 1) {
+            throw new IllegalArgumentException(
+                    "streamIdleTimeoutMillis: " + streamIdleTimeoutMillis + " (expected: > 0)");
+        }
+        this.streamHandler = streamHandler;
+        this.maxStreams = maxStreams;
+        this.streamIdleTimeoutMillis = streamIdleTimeoutMillis;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelSweep();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof ProtoMessage)
+                || !BodyTypes.isChunk(((ProtoMessage) msg).getHeader().getBodyType())) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        try {
+            readChunk(WrapChannel.attachChannel(ctx.channel()), (ProtoMessage) msg);
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private void readChunk(WrapChannel channel, ProtoMessage message) throws Signal {
+        int seqId = message.getHeader().getSeqId();
+        ByteBuf chunk = body(message);
+        boolean control = !chunk.isReadable();
+        boolean aborted = control && message.getHeader().getCode() != ChunkedProtoInput.END_CODE;
+
+        Stream stream = streams.get(seqId);
+        if (aborted) {
+            if (stream != null) {
+                streams.remove(seqId);
+                if (stream.active) {
+                    abort(channel, seqId, new IOException("stream cancelled by peer"));
+                }
+            }
+            return;
+        }
+        if (stream == null) {
+            if (streams.size() >= maxStreams) {
+                log.warn("同时进行的流超过 {}, seqId: {}, channel: {}。", maxStreams, seqId, channel);
+                throw IOSignals.TOO_MANY_STREAMS;
+            }
+            stream = new Stream();
+            streams.put(seqId, stream);
+            scheduleSweep();
+            try {
+                streamHandler.onStart(channel, message);
+            } catch (Throwable t) {
+                failed(channel, seqId, stream, control, t);
+                return;
+            }
+        }
+        stream.lastReadTime = System.currentTimeMillis();
+        if (!stream.active) {
+            // 出错的流丢弃剩余的 chunk 直到结束帧
+            if (control) {
+                streams.remove(seqId);
+            }
+            return;
+        }
+
+        try {
+            if (!control) {
+                streamHandler.onChunk(channel, seqId, chunk);
+            } else {
+                streams.remove(seqId);
+                streamHandler.onComplete(channel, seqId);
+            }
+        } catch (Throwable t) {
+            failed(channel, seqId, stream, control, t);
+        }
+    }
+
+    private void failed(WrapChannel channel, int seqId, Stream stream, boolean end,
+                        Throwable cause) {
+        log.error("处理流出错: {}, seqId: {}, channel: {}。", cause.getMessage(), seqId, channel);
+        if (end) {
+            streams.remove(seqId);
+        } else {
+            stream.active = false;
+        }
+        abort(channel, seqId, cause);
+    }
+
+    private void abort(WrapChannel channel, int seqId, Throwable cause) {
+        try {
+            streamHandler.onAbort(channel, seqId, cause);
+        } catch (Throwable t) {
+            log.error("发生错误: {}, 在 {} #onAbort()。", t.getMessage(), channel);
+        }
+    }
+
+    private static ByteBuf body(ProtoMessage message) {
+        if (message instanceof ByteBufProtoMessage) {
+            return ((ByteBufProtoMessage) message).content();
+        }
+        byte[] body = message.getBody();
+        return body == null ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(body);
+    }
+
+    private void scheduleSweep() {
+        if (sweepFuture == null && ctx != null) {
+            sweepFuture = ctx.executor().schedule(sweepTask, streamIdleTimeoutMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelSweep() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+            sweepFuture = null;
+        }
+    }
+
+    /**
+     * 放弃空闲超时的流, 还有流时继续调度, 超时的精度为 streamIdleTimeout.
+     */
+    private void sweep() {
+        if (streams.isEmpty()) {
+            return;
+        }
+        WrapChannel channel = WrapChannel.attachChannel(ctx.channel());
+        long deadline = System.currentTimeMillis() - streamIdleTimeoutMillis;
+        List<Integer> expired = new ArrayList<Integer>();
+        Iterator<PrimitiveEntry<Stream>> iterator = streams.entries().iterator();
+        while (iterator.hasNext()) {
+            PrimitiveEntry<Stream> entry = iterator.next();
+            Stream stream = entry.value();
+            if (stream.lastReadTime <= deadline) {
+                if (stream.active) {
+                    expired.add(entry.key());
+                }
+                iterator.remove();
+            }
+        }
+        for (Integer seqId : expired) {
+            log.warn("流空闲超时, seqId: {}, channel: {}。", seqId, channel);
+            abort(channel, seqId, new TimeoutException("stream idle timeout"));
+        }
+        if (!streams.isEmpty()) {
+            scheduleSweep();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelSweep();
+        if (!streams.isEmpty()) {
+            WrapChannel channel = WrapChannel.attachChannel(ctx.channel());
+            List<Integer> aborted = new ArrayList<Integer>();
+            for (PrimitiveEntry<Stream> entry : streams.entries()) {
+                if (entry.value().active) {
+                    aborted.add(entry.key());
+                }
+            }
+            streams.clear();
+            ClosedChannelException cause = new ClosedChannelException();
+            for (Integer seqId : aborted) {
+                abort(channel, seqId, cause);
+            }
+        }
+        super.channelInactive(ctx);
+    }
+
+    private static final class Stream {
+
+        /**
+         * 出错的流为 false.
+         */
+        private boolean active = true;
+        private long    lastReadTime;
+    }
+}
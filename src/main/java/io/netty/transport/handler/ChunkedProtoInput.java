@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedStream;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.message.ByteBufProtoMessage;
+import java.io.InputStream;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 把一个大的 body 切分成多个 chunk 帧, 交给 {@link ChunkedWriteHandler} 发送.
+ * <p>每个 chunk 帧都使用 header 中的 cmdId/seqId 等字段, bodyType 带有
+ * {@link BodyTypes#CHUNK_FLAG}, 最后发送一个空 body 的 chunk 表示流结束.
+ * 空 body 的 chunk 是控制帧, code 为 {@link #END_CODE} 表示正常结束, {@link #ABORT_CODE}
+ * 表示发送端出错取消了这个流, 见 {@link #abortFrame(ByteBufAllocator, ProtoMessage)}.
+ * {@link ChunkedWriteHandler} 只在通道可写时读取下一个 chunk, 发送端的内存占用与 body 大小无关.
+ * 接收端使用 {@link ChunkedMessageHandler}.</p>
+ *
+ * @author Suk
+ */
+public class ChunkedProtoInput implements ChunkedInput<ByteBuf> {
+
+    /**
+     * 默认的 chunk 大小, 远小于 {@link ProtoMessageDecoder} 默认的最大帧长.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    /**
+     * 控制帧的 code: 流正常结束.
+     */
+    public static final byte END_CODE   = 0;
+    /**
+     * 控制帧的 code: 流被发送端取消.
+     */
+    public static final byte ABORT_CODE = 1;
+
+    private final ProtoMessage          header;
+    private final ChunkedInput<ByteBuf> input;
+    private       boolean               endOfInput;
+
+    /**
+     * @param header 帧 header 模板, body 被忽略
+     * @param input  body 的数据源
+     */
+    public ChunkedProtoInput(ProtoMessage header, ChunkedInput<ByteBuf> input) {
+        if (header == null) {
+            throw new NullPointerException("header");
+        }
+        if (input == null) {
+            throw new NullPointerException("input");
+        }
+        this.header = header;
+        this.input = input;
+    }
+
+    public ChunkedProtoInput(ProtoMessage header, InputStream in) {
+        this(header, in, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedProtoInput(ProtoMessage header, InputStream in, int chunkSize) {
+        this(header, new ChunkedStream(in, chunkSize));
+    }
+
+    public ProtoMessage header() {
+        return header;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return endOfInput;
+    }
+
+    @Override
+    public void close() throws Exception {
+        input.close();
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+        if (endOfInput) {
+            return null;
+        }
+        while (!input.isEndOfInput()) {
+            ByteBuf chunk = input.readChunk(allocator);
+            if (chunk == null) {
+                // 数据源暂时没有数据
+                return null;
+            }
+            if (chunk.isReadable()) {
+                return frame(allocator, chunk);
+            }
+            // 空 chunk 会被当作结束标记, 跳过
+            chunk.release();
+        }
+        endOfInput = true;
+        return frame(allocator, null);
+    }
+
+    /**
+     * header + chunk 组成的帧, chunk 为 null 时是结束帧.
+     */
+    private ByteBuf frame(ByteBufAllocator allocator, ByteBuf chunk) {
+        int bodyLen = chunk == null ? 0 : chunk.readableBytes();
+        ByteBuf head = chunkHeader(allocator, header, bodyLen);
+        if (chunk == null) {
+            return head;
+        }
+        CompositeByteBuf frame = allocator.compositeBuffer(2);
+        frame.addComponents(true, head, chunk);
+        return frame;
+    }
+
+    /**
+     * 取消帧, 发送端在流发送失败而通道仍然可用时发送, 接收端收到后放弃这个流.
+     */
+    public static ByteBuf abortFrame(ByteBufAllocator allocator, ProtoMessage header) {
+        ByteBuf head = chunkHeader(allocator, header, 0);
+        head.setByte(head.readerIndex() + 14, ABORT_CODE);
+        return head;
+    }
+
+    /**
+     * chunk 帧的 header, bodyType 带有 {@link BodyTypes#CHUNK_FLAG}, 空 body 时是结束帧.
+     */
+    static ByteBuf chunkHeader(ByteBufAllocator allocator, ProtoMessage header, int bodyLen) {
+        ByteBuf head = allocator.buffer(ByteBufProtoMessage.HEADER_LENGTH);
+        ProtoMessageEncoder.writeHeader(header, bodyLen, head);
+        head.setByte(head.readerIndex() + 13, BodyTypes.withChunk(header.getHeader().getBodyType()));
+        if (bodyLen == 0) {
+            head.setByte(head.readerIndex() + 14, END_CODE);
+        }
+        return head;
+    }
+
+    @Override
+    public long length() {
+        return input.length();
+    }
+
+    @Override
+    public long progress() {
+        return input.progress();
+    }
+}
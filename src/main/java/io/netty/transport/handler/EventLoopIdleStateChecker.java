@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.channel.*;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.SystemClock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在链路自己的 event loop 中执行的空闲链路监测, 触发与 {@link IdleStateChecker} 相同的
+ * {@link IdleStateEvent}.
+ * <p>
+ * 每个 event loop 有一个 {@link IdleTimingWheel}, 复杂度为O(1), 链路的所有状态只在 event loop 中访问,
+ * 读写时间是普通字段, 触发事件也不需要切换线程. 与 {@link IdleStateChecker} 不同,
+ * 网络IO操作与idle检查会相互影响, 但检查本身只是比较时间戳, 开销很小.
+ * <p>
+ * 精度为 {@value IdleTimingWheel#TICK_MILLIS} 毫秒.
+ */
+public class EventLoopIdleStateChecker extends ChannelDuplexHandler {
+
+    private static final long MIN_TIMEOUT_MILLIS = 1;
+
+    private final long                  readerIdleTimeMillis;
+    private final long                  writerIdleTimeMillis;
+    private final long                  allIdleTimeMillis;
+    // 以下字段只在 event loop 中访问
+    private       int                   state; // 0 - none, 1 - initialized, 2 - destroyed
+    private       ChannelHandlerContext ctx;
+    private       IdleTimingWheel       wheel;
+    private       boolean               reading;
+    private       long                  lastReadTime;
+    private       long                  lastWriteTime;
+    private       boolean               firstReaderIdleEvent = true;
+    private       boolean               firstWriterIdleEvent = true;
+    private       boolean               firstAllIdleEvent    = true;
+    private       long                  readerDeadline;
+    private       long                  writerDeadline;
+    private       long                  allDeadline;
+    // 由 IdleTimingWheel 维护的侵入式链表节点
+    EventLoopIdleStateChecker wheelPrev;
+    EventLoopIdleStateChecker wheelNext;
+    long                      wheelRounds;
+    int                       wheelSlot = -1;
+
+    // do not get a new ChannelFutureListener per write operation to reduce GC pressure.
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            firstWriterIdleEvent = firstAllIdleEvent = true;
+            // make hb for firstWriterIdleEvent and firstAllIdleEvent
+            lastWriteTime = SystemClock.millisClock().now();
+        }
+    };
+
+    public EventLoopIdleStateChecker(int readerIdleTimeSeconds,
+                                     int writerIdleTimeSeconds,
+                                     int allIdleTimeSeconds) {
+
+        this(readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    public EventLoopIdleStateChecker(long readerIdleTime,
+                                     long writerIdleTime,
+                                     long allIdleTime,
+                                     TimeUnit unit) {
+
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        if (readerIdleTime <= 0) {
+            readerIdleTimeMillis = 0;
+        } else {
+            readerIdleTimeMillis = Math.max(unit.toMillis(readerIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+        if (writerIdleTime <= 0) {
+            writerIdleTimeMillis = 0;
+        } else {
+            writerIdleTimeMillis = Math.max(unit.toMillis(writerIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+        if (allIdleTime <= 0) {
+            allIdleTimeMillis = 0;
+        } else {
+            allIdleTimeMillis = Math.max(unit.toMillis(allIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Return the readerIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getReaderIdleTimeInMillis() {
+        return readerIdleTimeMillis;
+    }
+
+    /**
+     * Return the writerIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getWriterIdleTimeInMillis() {
+        return writerIdleTimeMillis;
+    }
+
+    /**
+     * Return the allIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getAllIdleTimeInMillis() {
+        return allIdleTimeMillis;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        Channel ch = ctx.channel();
+
+        if (ch.isActive() && ch.isRegistered()) {
+            // channelActive() event has been fired already, which means this.channelActive() will
+            // not be invoked. We have to initialize here instead.
+            initialize(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        // Initialize early if channel is active already.
+        if (ctx.channel().isActive()) {
+            initialize(ctx);
+        }
+        super.channelRegistered(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        initialize(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (readerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+            reading = true; // make hb for firstReaderIdleEvent and firstAllIdleEvent
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (readerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            lastReadTime = SystemClock.millisClock().now();
+            reading = false;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            throws Exception {
+        if (writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            if (promise.isVoid()) {
+                firstWriterIdleEvent = firstAllIdleEvent = true;
+                lastWriteTime = SystemClock.millisClock().now();
+            } else {
+                promise.addListener(writeListener);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    private void initialize(ChannelHandlerContext ctx) {
+        switch (state) {
+            case 1:
+            case 2:
+                return;
+        }
+
+        state = 1;
+
+        this.ctx = ctx;
+        long now = SystemClock.millisClock().now();
+        lastReadTime = lastWriteTime = now;
+        readerDeadline = readerIdleTimeMillis > 0 ? now + readerIdleTimeMillis : Long.MAX_VALUE;
+        writerDeadline = writerIdleTimeMillis > 0 ? now + writerIdleTimeMillis : Long.MAX_VALUE;
+        allDeadline = allIdleTimeMillis > 0 ? now + allIdleTimeMillis : Long.MAX_VALUE;
+        if (readerIdleTimeMillis > 0 || writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            // handler 的回调都在 event loop 中, 这里拿到的就是链路所属 event loop 的时间轮
+            wheel = IdleTimingWheel.current();
+            reschedule();
+        }
+    }
+
+    private void destroy() {
+        state = 2;
+
+        if (wheel != null) {
+            wheel.cancel(this);
+            wheel = null;
+        }
+    }
+
+    protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    private void reschedule() {
+        long deadline = Math.min(readerDeadline, Math.min(writerDeadline, allDeadline));
+        wheel.schedule(this, deadline, ctx.executor());
+    }
+
+    /**
+     * 由 {@link IdleTimingWheel} 在 event loop 中调用.
+     */
+    void expire(long now) {
+        if (state != 1 || !ctx.channel().isOpen()) {
+            return;
+        }
+        try {
+            if (readerDeadline <= now) {
+                expireReader(now);
+            }
+            if (writerDeadline <= now) {
+                expireWriter(now);
+            }
+            if (allDeadline <= now) {
+                expireAll(now);
+            }
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+        if (state == 1) {
+            reschedule();
+        }
+    }
+
+    private void expireReader(long now) throws Exception {
+        long nextDelay = readerIdleTimeMillis;
+        if (!reading) {
+            nextDelay -= now - lastReadTime;
+        }
+        if (nextDelay <= 0) {
+            // Reader is idle - set a new deadline and notify the callback.
+            readerDeadline = now + readerIdleTimeMillis;
+            IdleStateEvent event;
+            if (firstReaderIdleEvent) {
+                firstReaderIdleEvent = false;
+                event = IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT;
+            } else {
+                event = IdleStateEvent.READER_IDLE_STATE_EVENT;
+            }
+            channelIdle(ctx, event);
+        } else {
+            // Read occurred before the deadline - set a new deadline with shorter delay.
+            readerDeadline = now + nextDelay;
+        }
+    }
+
+    private void expireWriter(long now) throws Exception {
+        long nextDelay = writerIdleTimeMillis - (now - lastWriteTime);
+        if (nextDelay <= 0) {
+            // Writer is idle - set a new deadline and notify the callback.
+            writerDeadline = now + writerIdleTimeMillis;
+            IdleStateEvent event;
+            if (firstWriterIdleEvent) {
+                firstWriterIdleEvent = false;
+                event = IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT;
+            } else {
+                event = IdleStateEvent.WRITER_IDLE_STATE_EVENT;
+            }
+            channelIdle(ctx, event);
+        } else {
+            // Write occurred before the deadline - set a new deadline with shorter delay.
+            writerDeadline = now + nextDelay;
+        }
+    }
+
+    private void expireAll(long now) throws Exception {
+        long nextDelay = allIdleTimeMillis;
+        if (!reading) {
+            long lastIoTime = Math.max(lastReadTime, lastWriteTime);
+            nextDelay -= now - lastIoTime;
+        }
+        if (nextDelay <= 0) {
+            // Both reader and writer are idle - set a new deadline and notify the callback.
+            allDeadline = now + allIdleTimeMillis;
+            IdleStateEvent event;
+            if (firstAllIdleEvent) {
+                firstAllIdleEvent = false;
+                event = IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT;
+            } else {
+                event = IdleStateEvent.ALL_IDLE_STATE_EVENT;
+            }
+            channelIdle(ctx, event);
+        } else {
+            // Either read or write occurred before the deadline - set a new deadline with
+            // shorter delay.
+            allDeadline = now + nextDelay;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 把 chunk 流直接写入文件的 {@link StreamHandler}, 与 {@link ChunkedFileInput} 配合使用.
+ * <p>chunk 通过 {@link FileChannel} 写入, direct ByteBuf 不经过 byte[] 拷贝.
+ * 写文件在IO线程中进行, 通常只写到页缓存. 与 {@link ChunkedMessageHandler} 一样每个通道一个实例.</p>
+ *
+ * @author Suk
+ */
+@Slf4j
+public abstract class FileStreamHandler implements StreamHandler {
+
+    private final IntObjectMap<Target> targets = new IntObjectHashMap<Target>();
+
+    /**
+     * 流对应的文件.
+     *
+     * @param channel 通道
+     * @param first   第一个 chunk, 用于读取 cmdId 等 header
+     */
+    protected abstract File file(WrapChannel channel, ProtoMessage first) throws IOException;
+
+    /**
+     * 文件接收完成.
+     */
+    protected void completed(WrapChannel channel, int seqId, File file) throws Exception {
+        log.debug("文件接收完成: {}, seqId: {}, channel: {}。", file, seqId, channel);
+    }
+
+    /**
+     * 文件接收失败, 默认删除不完整的文件.
+     */
+    protected void failed(WrapChannel channel, int seqId, File file, Throwable cause) {
+        log.warn("文件接收失败: {}, 原因: {}, channel: {}。", file, cause.getMessage(), channel);
+        if (!file.delete()) {
+            log.warn("删除不完整的文件失败: {}。", file);
+        }
+    }
+
+    @Override
+    public void onStart(WrapChannel channel, ProtoMessage first) throws Exception {
+        int seqId = first.getHeader().getSeqId();
+        File file = file(channel, first);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        targets.put(seqId, new Target(file, raf.getChannel()));
+    }
+
+    @Override
+    public void onChunk(WrapChannel channel, int seqId, ByteBuf chunk) throws Exception {
+        FileChannel out = targets.get(seqId).channel;
+        while (chunk.isReadable()) {
+            chunk.readBytes(out, chunk.readableBytes());
+        }
+    }
+
+    @Override
+    public void onComplete(WrapChannel channel, int seqId) throws Exception {
+        Target target = targets.get(seqId);
+        // close 成功之后才移除, close 出错时由 onAbort 删除不完整的文件
+        target.channel.close();
+        targets.remove(seqId);
+        completed(channel, seqId, target.file);
+    }
+
+    @Override
+    public void onAbort(WrapChannel channel, int seqId, Throwable cause) {
+        Target target = targets.remove(seqId);
+        if (target == null) {
+            // onStart 失败
+            return;
+        }
+        try {
+            target.channel.close();
+        } catch (IOException e) {
+            log.warn("关闭文件出错: {}, {}。", target.file, e.getMessage());
+        }
+        failed(channel, seqId, target.file, cause);
+    }
+
+    private static final class Target {
+
+        private final File        file;
+        private final FileChannel channel;
+
+        private Target(File file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+}
@@ -38,6 +38,9 @@ import java.util.concurrent.TimeUnit;
  * <li>如果连接数小, 比如几万以内, 可以直接用Netty4.x默认的链路检测
  * {@link io.netty.handler.timeout.IdleStateHandler},
  * 如果连接数较大, 建议使用这个实现.</li>
+ * <li>连接数达到几十万时, 可以使用 {@link SweepingIdleStateChecker}, 没有 per-channel 的 timer 对象.</li>
+ * <li>{@link EventLoopIdleStateChecker} 在链路自己的 event loop 中使用时间轮检查, 没有上下文切换,
+ * 读写时间也不需要 volatile.</li>
  * </ol>
  */
 public class IdleStateChecker extends ChannelDuplexHandler {
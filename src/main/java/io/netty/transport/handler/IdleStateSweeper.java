@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.SystemClock;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.util.NamedThreadFactory;
+
+/**
+ * 多个 {@link SweepingIdleStateChecker} 共享的空闲扫描器.
+ * <p>
+ * 链路被轮流分配到若干个桶中, 每个 tick 只扫描一个桶, 所以同一条链路每 {@code tick * buckets}
+ * 毫秒被检查一次, 空闲事件最多比 {@link IdleStateChecker} 晚这么久触发.
+ * 无论链路数多少, timer 中始终只有一个 {@link Timeout}, 每条链路只占用桶数组中的一个位置.
+ *
+ * @author Suk
+ * @see SweepingIdleStateChecker
+ */
+@Slf4j
+public class IdleStateSweeper {
+
+    /**
+     * 默认的 tick 间隔.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    /**
+     * 默认的桶数, 与默认 tick 一起, 每条链路每秒检查一次.
+     */
+    public static final int  DEFAULT_BUCKETS     = 10;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Timer         timer;
+    private final boolean       ownTimer;
+    private final long          tickMillis;
+    private final Bucket[]      buckets;
+    private final AtomicInteger nextBucket = new AtomicInteger();
+    private final TimerTask     sweepTask  = new TimerTask() {
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            if (stopped) {
+                return;
+            }
+            try {
+                sweep(buckets[cursor]);
+            } catch (Throwable t) {
+                log.error("空闲扫描发生错误: {}.", t.getMessage(), t);
+            }
+            cursor = (cursor + 1) % buckets.length;
+            sweepTimeout = timer.newTimeout(this, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    };
+    // 只在timer线程中访问
+    private          int     cursor;
+    private volatile Timeout sweepTimeout;
+    private volatile boolean stopped;
+
+    public IdleStateSweeper() {
+        this(new HashedWheelTimer(new NamedThreadFactory("idle.sweeper")), true,
+                DEFAULT_TICK_MILLIS, DEFAULT_BUCKETS);
+    }
+
+    public IdleStateSweeper(Timer timer) {
+        this(timer, DEFAULT_TICK_MILLIS, DEFAULT_BUCKETS);
+    }
+
+    public IdleStateSweeper(Timer timer, long tickMillis, int buckets) {
+        this(timer, false, tickMillis, buckets);
+    }
+
+    private IdleStateSweeper(Timer timer, boolean ownTimer, long tickMillis, int buckets) {
+        if (timer == null) {
+            throw new NullPointerException("timer");
+        }
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis: " + tickMillis + " (expected: > 0)");
+        }
+        if (buckets < 1) {
+            throw new IllegalArgumentException("buckets: " + buckets + " (expected: > 0)");
+        }
+        this.timer = timer;
+        this.ownTimer = ownTimer;
+        this.tickMillis = tickMillis;
+        this.buckets = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.buckets[i] = new Bucket();
+        }
+        sweepTimeout = timer.newTimeout(sweepTask, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 同一条链路两次检查之间的最大间隔.
+     */
+    public long sweepIntervalMillis() {
+        return tickMillis * buckets.length;
+    }
+
+    /**
+     * 当前被扫描的链路数.
+     */
+    public int size() {
+        int size = 0;
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                size += bucket.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 停止扫描, 使用自己创建的 timer 时同时停止 timer.
+     */
+    public void stop() {
+        stopped = true;
+        Timeout timeout = sweepTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        if (ownTimer) {
+            timer.stop();
+        }
+    }
+
+    void register(SweepingIdleStateChecker checker) {
+        int index = (nextBucket.getAndIncrement() & Integer.MAX_VALUE) % buckets.length;
+        Bucket bucket = buckets[index];
+        synchronized (bucket) {
+            if (bucket.size == bucket.checkers.length) {
+                SweepingIdleStateChecker[] checkers =
+                        new SweepingIdleStateChecker[bucket.size << 1];
+                System.arraycopy(bucket.checkers, 0, checkers, 0, bucket.size);
+                bucket.checkers = checkers;
+            }
+            checker.bucket = bucket;
+            checker.slot = bucket.size;
+            bucket.checkers[bucket.size++] = checker;
+        }
+    }
+
+    void deregister(SweepingIdleStateChecker checker) {
+        Bucket bucket = checker.bucket;
+        if (bucket == null) {
+            return;
+        }
+        synchronized (bucket) {
+            int slot = checker.slot;
+            if (slot < 0 || slot >= bucket.size || bucket.checkers[slot] != checker) {
+                return;
+            }
+            // 用最后一个元素填补空位, O(1)删除
+            int last = --bucket.size;
+            SweepingIdleStateChecker moved = bucket.checkers[last];
+            bucket.checkers[slot] = moved;
+            moved.slot = slot;
+            bucket.checkers[last] = null;
+            checker.bucket = null;
+            checker.slot = -1;
+        }
+    }
+
+    private void sweep(Bucket bucket) {
+        long now = SystemClock.millisClock().now();
+        List<SweepingIdleStateChecker> idle = null;
+        synchronized (bucket) {
+            for (int i = 0; i < bucket.size; i++) {
+                SweepingIdleStateChecker checker = bucket.checkers[i];
+                if (checker.isIdle(now)) {
+                    if (idle == null) {
+                        idle = new ArrayList<SweepingIdleStateChecker>();
+                    }
+                    idle.add(checker);
+                }
+            }
+        }
+        // 在锁外触发事件
+        if (idle != null) {
+            for (SweepingIdleStateChecker checker : idle) {
+                checker.fireIdleEvents(now);
+            }
+        }
+    }
+
+    static final class Bucket {
+
+        private SweepingIdleStateChecker[] checkers =
+                new SweepingIdleStateChecker[INITIAL_CAPACITY];
+        private int                        size;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.util.SystemClock;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个 event loop 一个的时间轮, 只在所属的 event loop 中访问, 没有任何同步.
+ * 槽中是 {@link EventLoopIdleStateChecker} 组成的侵入式双向链表, 添加/删除都是O(1),
+ * 每个 event loop 只在自己的 scheduled 队列中保留一个 tick 任务.
+ *
+ * @see EventLoopIdleStateChecker
+ */
+final class IdleTimingWheel {
+
+    static final long TICK_MILLIS = 100;
+    static final int  WHEEL_SIZE  = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+    /**
+     * wheelSlot 的特殊值: 已经从槽中摘下, 正在 advance 中等待处理.
+     */
+    static final int DETACHED = -2;
+
+    private static final FastThreadLocal<IdleTimingWheel> WHEELS =
+            new FastThreadLocal<IdleTimingWheel>() {
+
+                @Override
+                protected IdleTimingWheel initialValue() throws Exception {
+                    return new IdleTimingWheel();
+                }
+            };
+
+    private final EventLoopIdleStateChecker[] heads =
+            new EventLoopIdleStateChecker[WHEEL_SIZE];
+    private final long                       startTime = SystemClock.millisClock().now();
+    private final Runnable                   tickTask  = new Runnable() {
+
+        @Override
+        public void run() {
+            advance(SystemClock.millisClock().now());
+        }
+    };
+    // advance 中摘下的一个槽, 复用以避免分配
+    private final List<EventLoopIdleStateChecker> expiring = new ArrayList<EventLoopIdleStateChecker>();
+    // 下一个要处理的 tick
+    private long                 tick;
+    private int                  size;
+    private ScheduledFuture<?>   tickFuture;
+
+    private IdleTimingWheel() {
+    }
+
+    /**
+     * 当前线程的时间轮, 必须在 event loop 中调用.
+     */
+    static IdleTimingWheel current() {
+        return WHEELS.get();
+    }
+
+    int size() {
+        return size;
+    }
+
+    void schedule(EventLoopIdleStateChecker checker, long deadline, EventExecutor executor) {
+        if (checker.wheelSlot >= 0) {
+            unlink(checker);
+        }
+        if (size == 0 && tickFuture == null) {
+            // tick 任务停止期间没有推进, 直接跳到当前时间
+            tick = Math.max(tick, (SystemClock.millisClock().now() - startTime) / TICK_MILLIS);
+        }
+        long target = (deadline - startTime + TICK_MILLIS - 1) / TICK_MILLIS;
+        if (target < tick) {
+            target = tick;
+        }
+        checker.wheelRounds = (target - tick) / WHEEL_SIZE;
+        int slot = (int) (target & MASK);
+        checker.wheelSlot = slot;
+        checker.wheelPrev = null;
+        checker.wheelNext = heads[slot];
+        if (heads[slot] != null) {
+            heads[slot].wheelPrev = checker;
+        }
+        heads[slot] = checker;
+
+        if (size++ == 0 && tickFuture == null) {
+            tickFuture = executor.scheduleAtFixedRate(tickTask, TICK_MILLIS, TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void cancel(EventLoopIdleStateChecker checker) {
+        if (checker.wheelSlot >= 0) {
+            unlink(checker);
+        } else if (checker.wheelSlot == DETACHED) {
+            // 已经摘下的不在链表中, 只标记为不再处理
+            checker.wheelSlot = -1;
+        }
+    }
+
+    private void unlink(EventLoopIdleStateChecker checker) {
+        EventLoopIdleStateChecker prev = checker.wheelPrev;
+        EventLoopIdleStateChecker next = checker.wheelNext;
+        if (prev != null) {
+            prev.wheelNext = next;
+        } else {
+            heads[checker.wheelSlot] = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        checker.wheelPrev = checker.wheelNext = null;
+        checker.wheelSlot = -1;
+        size--;
+    }
+
+    private void advance(long now) {
+        long target = (now - startTime) / TICK_MILLIS;
+        while (tick <= target) {
+            // 先递增, 处理过程中重新加入的 checker 不会落在当前正在处理的 tick
+            int slot = (int) (tick++ & MASK);
+            EventLoopIdleStateChecker checker = heads[slot];
+            heads[slot] = null;
+            // 先把整个槽摘下来并标记, 处理过程中其它 checker 被取消或重新调度时不会修改这个槽
+            while (checker != null) {
+                EventLoopIdleStateChecker next = checker.wheelNext;
+                checker.wheelPrev = checker.wheelNext = null;
+                checker.wheelSlot = DETACHED;
+                size--;
+                expiring.add(checker);
+                checker = next;
+            }
+            try {
+                for (int i = 0; i < expiring.size(); i++) {
+                    checker = expiring.get(i);
+                    if (checker.wheelSlot != DETACHED) {
+                        // 处理前面的 checker 时被取消或重新调度了
+                        continue;
+                    }
+                    checker.wheelSlot = -1;
+                    if (checker.wheelRounds > 0) {
+                        checker.wheelRounds--;
+                        relink(checker, slot);
+                    } else {
+                        checker.expire(now);
+                    }
+                }
+            } finally {
+                expiring.clear();
+            }
+        }
+        if (size == 0 && tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+    private void relink(EventLoopIdleStateChecker checker, int slot) {
+        checker.wheelSlot = slot;
+        checker.wheelPrev = null;
+        checker.wheelNext = heads[slot];
+        if (heads[slot] != null) {
+            heads[slot].wheelPrev = checker;
+        }
+        heads[slot] = checker;
+        size++;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.transport.message.DatagramProtoMessage;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 把 {@link DatagramPacket} 解码为 {@link DatagramProtoMessage}, 每个报文是一个完整的帧,
+ * 格式见 {@link ProtoMessageDecoder}. body 直接引用报文内容, 不做拷贝, 不完整的报文直接丢弃.
+ *
+ * @author Suk
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class ProtoDatagramDecoder extends MessageToMessageDecoder<DatagramPacket> {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, DatagramPacket packet, List<Object> out)
+            throws Exception {
+        DatagramProtoMessage message = DatagramProtoMessage.wrap(packet);
+        if (message == null) {
+            log.debug("丢弃不完整的报文: {}, 长度: {}.", packet.sender(),
+                    packet.content().readableBytes());
+            return;
+        }
+        // 报文在decode之后会被释放, 消息需要自己的引用
+        packet.content().retain();
+        out.add(message);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import java.net.InetSocketAddress;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.IMessage;
+
+/**
+ * 把 {@code AddressedEnvelope<IMessage, InetSocketAddress>} 编码为 {@link DatagramPacket},
+ * 直接写入按包长分配的 {@link ByteBuf}.
+ * <p>
+ * 普通的 {@link IMessage} 只有在IO线程处理请求期间写出时才能发给 {@link #REPLY_TO} 记录的发送方,
+ * 其它情况(例如在业务线程中回复)必须通过 {@code DatagramProtoMessage.reply()} 指定地址,
+ * 否则写入失败并记录警告.
+ *
+ * @author Suk
+ * @see io.netty.transport.message.DatagramProtoMessage#reply(IMessage)
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class ProtoDatagramEncoder
+        extends MessageToMessageEncoder<AddressedEnvelope<IMessage, InetSocketAddress>> {
+
+    /**
+     * 当前正在IO线程中处理的请求的发送方, 由 UdpAcceptorHandler 设置.
+     */
+    public static final AttributeKey<InetSocketAddress> REPLY_TO = AttributeKey
+            .valueOf("udp.reply.to");
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            throws Exception {
+        if (msg instanceof IMessage) {
+            InetSocketAddress recipient = ctx.channel().attr(REPLY_TO).get();
+            if (recipient == null) {
+                log.warn("UDP 响应没有指定地址, 需要通过 DatagramProtoMessage.reply() 发送, channel: {}.",
+                        ctx.channel());
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new EncoderException("UDP 响应没有指定地址: " + msg.getClass()));
+                return;
+            }
+            msg = new DefaultAddressedEnvelope<IMessage, InetSocketAddress>((IMessage) msg,
+                    recipient);
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        if (!(msg instanceof AddressedEnvelope)) {
+            return false;
+        }
+        AddressedEnvelope<?, ?> envelope = (AddressedEnvelope<?, ?>) msg;
+        return envelope.content() instanceof IMessage
+                && envelope.recipient() instanceof InetSocketAddress;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx,
+                          AddressedEnvelope<IMessage, InetSocketAddress> envelope,
+                          List<Object> out) throws Exception {
+        IMessage msg = envelope.content();
+        ByteBuf buf = ctx.alloc().ioBuffer(ProtoMessageEncoder.packageLength(msg));
+        boolean success = false;
+        try {
+            ProtoMessageEncoder.writeMessage(msg, buf);
+            out.add(new DatagramPacket(buf, envelope.recipient(), envelope.sender()));
+            success = true;
+        } finally {
+            if (!success) {
+                buf.release();
+            }
+        }
+    }
+}
@@ -25,7 +25,12 @@ package io.netty.transport.handler;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.codec.Compression;
+import io.netty.transport.exception.IOSignals;
+import io.netty.transport.message.ByteBufProtoMessage;
 import io.netty.util.ReferenceCountUtil;
+import java.util.zip.DataFormatException;
 import me.asu.socket.message.IMessage;
 import me.asu.socket.message.ProtoMessage;
 
@@ -46,6 +51,11 @@ import me.asu.socket.message.ProtoMessage;
  * body:
  *      byte array.
  * </pre></code>
+ * <p>zero-copy 模式下直接从帧中解析 header, 产生 body 为帧 slice 的 {@link ByteBufProtoMessage},
+ * 没有 byte[] 拷贝, 消息由下游 handler 负责释放.</p>
+ * <p>开启 {@link #setDecompress(boolean)} 后, bodyType 中标记了压缩的帧(见 {@link BodyTypes})先解压,
+ * 下游看到的总是原始的 body. 压缩标志位不经过协商, 默认不开启, bodyType 原样交给下游,
+ * 只有确认对端使用压缩时才开启.</p>
  * <p>2017 Suk All rights reserved.</p>
  *
  * @author Suk
@@ -54,13 +64,47 @@ import me.asu.socket.message.ProtoMessage;
  */
 public class ProtoMessageDecoder extends LengthFieldBasedFrameDecoder {
 
+    /**
+     * 默认的解压后 body 最大长度.
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_LENGTH = 16 * 1024 * 1024;
+
+    private final boolean zeroCopy;
+    private       boolean decompress;
+    private       int     maxDecompressedLength = DEFAULT_MAX_DECOMPRESSED_LENGTH;
+
     public ProtoMessageDecoder() {
         // maxFrameLength 64K
-        super(65535, 8, 4, 4, 0);
+        this(65535);
     }
 
     public ProtoMessageDecoder(int maxFrameLength) {
+        this(maxFrameLength, false);
+    }
+
+    public ProtoMessageDecoder(int maxFrameLength, boolean zeroCopy) {
         super(maxFrameLength, 8, 4, 4, 0);
+        this.zeroCopy = zeroCopy;
+    }
+
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    public boolean isDecompress() {
+        return decompress;
+    }
+
+    public void setDecompress(boolean decompress) {
+        this.decompress = decompress;
+    }
+
+    public int getMaxDecompressedLength() {
+        return maxDecompressedLength;
+    }
+
+    public void setMaxDecompressedLength(int maxDecompressedLength) {
+        this.maxDecompressedLength = maxDecompressedLength;
     }
 
     @Override
@@ -69,6 +113,19 @@ public class ProtoMessageDecoder extends LengthFieldBasedFrameDecoder {
         if (decode == null) {
             return decode;
         }
+        if (decompress) {
+            decode = decompress(ctx, decode);
+        }
+
+        if (zeroCopy) {
+            // 帧的所有权转移给消息
+            ByteBufProtoMessage message = ByteBufProtoMessage.wrap(decode);
+            if (message == null) {
+                ReferenceCountUtil.release(decode);
+                throw IOSignals.ILLEGAL_SIGN;
+            }
+            return message;
+        }
 
         byte[] bytes;
         int offset;
@@ -87,4 +144,53 @@ public class ProtoMessageDecoder extends LengthFieldBasedFrameDecoder {
         ReferenceCountUtil.release(decode);
         return message;
     }
+
+    /**
+     * 解压帧, 返回 header 和原始 body 组成的新帧, 原来的帧被释放; 没有压缩时直接返回原来的帧.
+     */
+    private ByteBuf decompress(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+        int idx = frame.readerIndex();
+        if (frame.readableBytes() < ByteBufProtoMessage.HEADER_LENGTH) {
+            return frame;
+        }
+        byte bodyType = frame.getByte(idx + 13);
+        int compression = BodyTypes.compression(bodyType);
+        if (compression == BodyTypes.COMPRESS_NONE) {
+            return frame;
+        }
+
+        ByteBuf raw = null;
+        try {
+            int bodyLen = frame.getInt(idx + 8);
+            if (bodyLen < 4 || bodyLen > frame.readableBytes() - ByteBufProtoMessage.HEADER_LENGTH) {
+                throw IOSignals.ILLEGAL_SIGN;
+            }
+            ByteBuf body = frame.slice(idx + ByteBufProtoMessage.HEADER_LENGTH, bodyLen);
+            int rawLen = Compression.rawLength(body);
+            if (rawLen < 0 || rawLen > maxDecompressedLength) {
+                throw IOSignals.BODY_TOO_LARGE;
+            }
+            // 限制最大容量, 压缩数据自带的长度与 rawLen 不一致时解压失败而不是扩容
+            int capacity = ByteBufProtoMessage.HEADER_LENGTH + rawLen;
+            raw = ctx.alloc().buffer(capacity, capacity);
+            raw.writeBytes(frame, idx, ByteBufProtoMessage.HEADER_LENGTH);
+            try {
+                Compression.decompress(compression, body, raw);
+            } catch (IndexOutOfBoundsException e) {
+                throw IOSignals.BODY_TOO_LARGE;
+            } catch (DataFormatException e) {
+                throw IOSignals.ILLEGAL_SIGN;
+            }
+            raw.setInt(8, raw.readableBytes() - ByteBufProtoMessage.HEADER_LENGTH);
+            raw.setByte(13, BodyTypes.withCompression(bodyType, BodyTypes.COMPRESS_NONE));
+            ByteBuf result = raw;
+            raw = null;
+            return result;
+        } finally {
+            if (raw != null) {
+                raw.release();
+            }
+            frame.release();
+        }
+    }
 }
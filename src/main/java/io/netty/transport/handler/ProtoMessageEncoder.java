@@ -25,10 +25,21 @@ package io.netty.transport.handler;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.codec.Compression;
+import io.netty.transport.codec.MarshalFactory;
+import io.netty.transport.message.ByteBufProtoMessage;
+import io.netty.transport.message.ObjectProtoMessage;
 import me.asu.socket.message.IMessage;
+import me.asu.socket.message.ProtoMessage;
 
 /**
  * ProtoMessageEncoder
+ * <p>{@link ProtoMessage} 的 header 和 body 直接写入按包长精确分配的 {@link ByteBuf},
+ * 不经过 {@link IMessage#pack()} 产生的中间 byte[]; 其它 {@link IMessage} 仍然使用 pack().</p>
+ * <p>{@link ObjectProtoMessage} 的 body 直接编组到输出中, 之后回填 bodyLen.</p>
+ * <p>设置了压缩算法时, 长度达到阈值的 body 被压缩, 并在 bodyType 中标记,
+ * 见 {@link BodyTypes}, 压缩后没有变小的保持原样.</p>
  * <p>2017 Suk All rights reserved.</p>
  *
  * @author Suk
@@ -37,10 +48,130 @@ import me.asu.socket.message.IMessage;
  */
 public class ProtoMessageEncoder extends MessageToByteEncoder<IMessage> {
 
+    /**
+     * 无法预知包长时的初始容量.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final int compression;
+    private final int compressionThreshold;
+
+    public ProtoMessageEncoder() {
+        this(BodyTypes.COMPRESS_NONE, 0);
+    }
+
+    /**
+     * @param compression          压缩算法, 如 {@link BodyTypes#COMPRESS_SNAPPY}
+     * @param compressionThreshold body 达到这个长度才压缩
+     */
+    public ProtoMessageEncoder(int compression, int compressionThreshold) {
+        if ((compression & ~BodyTypes.COMPRESS_MASK) != 0) {
+            throw new IllegalArgumentException("compression: " + compression);
+        }
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * 按 {@link ProtoMessageDecoder} 描述的格式写入 header.
+     */
+    public static void writeHeader(ProtoMessage msg, int bodyLen, ByteBuf out) {
+        out.writeInt(msg.getHeader().getCmdId());
+        out.writeInt(msg.getHeader().getSeqId());
+        out.writeInt(bodyLen);
+        out.writeByte(msg.getHeader().getCmdType());
+        out.writeByte(msg.getHeader().getBodyType());
+        out.writeByte(msg.getHeader().getCode());
+        out.writeByte(msg.getHeader().getTtl());
+    }
+
+    /**
+     * 编码后的大小, 无法预知时返回默认的初始容量.
+     */
+    public static int packageLength(IMessage msg) {
+        if (msg instanceof ProtoMessage) {
+            return ((ProtoMessage) msg).getPackageLength();
+        }
+        return DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * 把消息写入 out.
+     */
+    public static void writeMessage(IMessage msg, ByteBuf out) {
+        if (msg instanceof ObjectProtoMessage) {
+            ObjectProtoMessage message = (ObjectProtoMessage) msg;
+            int start = out.writerIndex();
+            writeHeader(message, 0, out);
+            MarshalFactory.getStream(BodyTypes.marshalType(message.getHeader().getBodyType()))
+                          .marshal(message.content(), out);
+            int bodyLen = out.writerIndex() - start - ByteBufProtoMessage.HEADER_LENGTH;
+            // 回填 bodyLen, 偏移见 writeHeader
+            out.setInt(start + 8, bodyLen);
+        } else if (msg instanceof ByteBufProtoMessage) {
+            ByteBuf content = ((ByteBufProtoMessage) msg).content();
+            int bodyLen = content.readableBytes();
+            writeHeader((ProtoMessage) msg, bodyLen, out);
+            out.writeBytes(content, content.readerIndex(), bodyLen);
+        } else if (msg instanceof ProtoMessage) {
+            byte[] body = ((ProtoMessage) msg).getBody();
+            int bodyLen = body == null ? 0 : body.length;
+            writeHeader((ProtoMessage) msg, bodyLen, out);
+            if (bodyLen > 0) {
+                out.writeBytes(body);
+            }
+        } else {
+            byte[] pack = msg.pack();
+            out.writeBytes(pack);
+        }
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, IMessage msg,
+                                     boolean preferDirect) throws Exception {
+        int size = packageLength(msg);
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer(size);
+        } else {
+            return ctx.alloc().heapBuffer(size);
+        }
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out)
             throws Exception {
-        byte[] pack = msg.pack();
-        out.writeBytes(pack);
+        int start = out.writerIndex();
+        writeMessage(msg, out);
+        if (compression != BodyTypes.COMPRESS_NONE && msg instanceof ProtoMessage) {
+            compressBody(out, start);
+        }
+    }
+
+    /**
+     * 压缩 out 中从 start 开始的消息的 body.
+     * <p>压缩数据先写在 body 之后, 变小时再移到 body 的位置, 不分配临时 buffer.</p>
+     */
+    private void compressBody(ByteBuf out, int start) {
+        int bodyLen = out.getInt(start + 8);
+        byte bodyType = out.getByte(start + 13);
+        if (bodyLen < compressionThreshold
+                || BodyTypes.compression(bodyType) != BodyTypes.COMPRESS_NONE) {
+            return;
+        }
+        int bodyStart = start + ByteBufProtoMessage.HEADER_LENGTH;
+        // 预留最坏情况下的空间, 压缩过程中 out 不会扩容, body 的底层内存保持不变
+        out.ensureWritable(Compression.maxCompressedLength(bodyLen));
+        int compressedStart = out.writerIndex();
+        Compression.compress(compression, out.slice(bodyStart, bodyLen), out);
+        int compressedLen = out.writerIndex() - compressedStart;
+        if (compressedLen >= bodyLen) {
+            out.writerIndex(compressedStart);
+            return;
+        }
+        // compressedLen < bodyLen, 源和目标区域不重叠
+        out.setBytes(bodyStart, out, compressedStart, compressedLen);
+        out.writerIndex(bodyStart + compressedLen);
+        out.setInt(start + 8, compressedLen);
+        out.setByte(start + 13, BodyTypes.withCompression(bodyType, compression));
     }
 }
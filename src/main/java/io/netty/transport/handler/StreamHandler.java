@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package io.netty.transport.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.transport.channel.WrapChannel;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * chunk 流的回调, 由 {@link ChunkedMessageHandler} 在IO线程中调用, 不要阻塞.
+ * <p>同一个流的回调顺序: onStart, onChunk*, onComplete 或 onAbort.</p>
+ *
+ * @author Suk
+ */
+public interface StreamHandler {
+
+    /**
+     * 流开始.
+     *
+     * @param channel 通道
+     * @param first   第一个 chunk, 用于读取 cmdId 等 header, 它的 body 随后通过 onChunk 传入
+     */
+    void onStart(WrapChannel channel, ProtoMessage first) throws Exception;
+
+    /**
+     * 收到一个 chunk, chunk 在回调返回后被释放, 需要继续持有时请 retain.
+     */
+    void onChunk(WrapChannel channel, int seqId, ByteBuf chunk) throws Exception;
+
+    /**
+     * 收到结束 chunk, 流正常结束.
+     */
+    void onComplete(WrapChannel channel, int seqId) throws Exception;
+
+    /**
+     * 回调出错或者通道关闭, 流异常结束, 之后不会再收到这个流的回调.
+     */
+    void onAbort(WrapChannel channel, int seqId, Throwable cause);
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler;
+
+import io.netty.channel.*;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.SystemClock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 {@link IdleStateSweeper} 的空闲链路监测, 触发与 {@link IdleStateChecker} 相同的
+ * {@link IdleStateEvent}.
+ * <p>
+ * {@link IdleStateChecker} 每条链路在 timer 中最多有3个 {@link io.netty.util.Timeout},
+ * 并且每次到期都会重新创建, 链路数达到几十万时 timer 的内存和调度开销都很大.
+ * 这个实现每条链路只记录读写时间, 由共享的 sweeper 周期性地分桶检查, 没有任何 per-channel 的 timer 对象,
+ * 代价是事件最多延迟 {@link IdleStateSweeper#sweepIntervalMillis()}.
+ */
+public class SweepingIdleStateChecker extends ChannelDuplexHandler {
+
+    private static final long MIN_TIMEOUT_MILLIS = 1;
+
+    private final    IdleStateSweeper      sweeper;
+    private final    long                  readerIdleTimeMillis;
+    private final    long                  writerIdleTimeMillis;
+    private final    long                  allIdleTimeMillis;
+    private volatile int                   state; // 0 - none, 1 - initialized, 2 - destroyed
+    private volatile ChannelHandlerContext ctx;
+    private volatile boolean               reading;
+    private volatile long                  lastReadTime;
+    private volatile long                  lastWriteTime;
+    private volatile boolean               firstReaderIdleEvent = true;
+    private volatile boolean               firstWriterIdleEvent = true;
+    private volatile boolean               firstAllIdleEvent    = true;
+    // 以下字段只在sweeper线程中访问, 上一次触发事件的时间
+    private          long                  lastReaderIdleTime;
+    private          long                  lastWriterIdleTime;
+    private          long                  lastAllIdleTime;
+    // 由 sweeper 在桶锁内维护
+    IdleStateSweeper.Bucket bucket;
+    int                     slot = -1;
+
+    // do not get a new ChannelFutureListener per write operation to reduce GC pressure.
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            firstWriterIdleEvent = firstAllIdleEvent = true;
+            // make hb for firstWriterIdleEvent and firstAllIdleEvent
+            lastWriteTime = SystemClock.millisClock().now();
+        }
+    };
+
+    public SweepingIdleStateChecker(IdleStateSweeper sweeper,
+                                    int readerIdleTimeSeconds,
+                                    int writerIdleTimeSeconds,
+                                    int allIdleTimeSeconds) {
+
+        this(sweeper, readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    public SweepingIdleStateChecker(IdleStateSweeper sweeper,
+                                    long readerIdleTime,
+                                    long writerIdleTime,
+                                    long allIdleTime,
+                                    TimeUnit unit) {
+
+        if (sweeper == null) {
+            throw new NullPointerException("sweeper");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        this.sweeper = sweeper;
+
+        if (readerIdleTime <= 0) {
+            readerIdleTimeMillis = 0;
+        } else {
+            readerIdleTimeMillis = Math.max(unit.toMillis(readerIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+        if (writerIdleTime <= 0) {
+            writerIdleTimeMillis = 0;
+        } else {
+            writerIdleTimeMillis = Math.max(unit.toMillis(writerIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+        if (allIdleTime <= 0) {
+            allIdleTimeMillis = 0;
+        } else {
+            allIdleTimeMillis = Math.max(unit.toMillis(allIdleTime), MIN_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Return the readerIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getReaderIdleTimeInMillis() {
+        return readerIdleTimeMillis;
+    }
+
+    /**
+     * Return the writerIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getWriterIdleTimeInMillis() {
+        return writerIdleTimeMillis;
+    }
+
+    /**
+     * Return the allIdleTime that was given when instance this class in milliseconds.
+     */
+    public long getAllIdleTimeInMillis() {
+        return allIdleTimeMillis;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        Channel ch = ctx.channel();
+
+        if (ch.isActive() && ch.isRegistered()) {
+            // channelActive() event has been fired already, which means this.channelActive() will
+            // not be invoked. We have to initialize here instead.
+            initialize(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        // Initialize early if channel is active already.
+        if (ctx.channel().isActive()) {
+            initialize(ctx);
+        }
+        super.channelRegistered(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        initialize(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        destroy();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (readerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+            reading = true; // make hb for firstReaderIdleEvent and firstAllIdleEvent
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (readerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            lastReadTime = SystemClock.millisClock().now();
+            reading = false;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            throws Exception {
+        if (writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            if (promise.isVoid()) {
+                firstWriterIdleEvent = firstAllIdleEvent = true;
+                lastWriteTime = SystemClock.millisClock().now();
+            } else {
+                promise.addListener(writeListener);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    private void initialize(ChannelHandlerContext ctx) {
+        switch (state) {
+            case 1:
+            case 2:
+                return;
+        }
+
+        state = 1;
+
+        this.ctx = ctx;
+        lastReadTime = lastWriteTime = SystemClock.millisClock().now();
+        if (readerIdleTimeMillis > 0 || writerIdleTimeMillis > 0 || allIdleTimeMillis > 0) {
+            sweeper.register(this);
+        }
+    }
+
+    private void destroy() {
+        state = 2;
+
+        sweeper.deregister(this);
+    }
+
+    protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    /**
+     * 由 sweeper 在桶锁内调用, 只做判断, 不触发事件.
+     */
+    boolean isIdle(long now) {
+        return readerIdle(now) || writerIdle(now) || allIdle(now);
+    }
+
+    private boolean readerIdle(long now) {
+        return readerIdleTimeMillis > 0 && !reading
+                && now - Math.max(lastReadTime, lastReaderIdleTime) >= readerIdleTimeMillis;
+    }
+
+    private boolean writerIdle(long now) {
+        return writerIdleTimeMillis > 0
+                && now - Math.max(lastWriteTime, lastWriterIdleTime) >= writerIdleTimeMillis;
+    }
+
+    private boolean allIdle(long now) {
+        if (allIdleTimeMillis <= 0 || reading) {
+            return false;
+        }
+        long lastIoTime = Math.max(Math.max(lastReadTime, lastWriteTime), lastAllIdleTime);
+        return now - lastIoTime >= allIdleTimeMillis;
+    }
+
+    void fireIdleEvents(long now) {
+        ChannelHandlerContext ctx = this.ctx;
+        if (state != 1 || ctx == null || !ctx.channel().isOpen()) {
+            return;
+        }
+        try {
+            if (readerIdle(now)) {
+                // Reader is idle - the next event fires after another readerIdleTime.
+                lastReaderIdleTime = now;
+                IdleStateEvent event;
+                if (firstReaderIdleEvent) {
+                    firstReaderIdleEvent = false;
+                    event = IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.READER_IDLE_STATE_EVENT;
+                }
+                channelIdle(ctx, event);
+            }
+            if (writerIdle(now)) {
+                lastWriterIdleTime = now;
+                IdleStateEvent event;
+                if (firstWriterIdleEvent) {
+                    firstWriterIdleEvent = false;
+                    event = IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.WRITER_IDLE_STATE_EVENT;
+                }
+                channelIdle(ctx, event);
+            }
+            if (allIdle(now)) {
+                lastAllIdleTime = now;
+                IdleStateEvent event;
+                if (firstAllIdleEvent) {
+                    firstAllIdleEvent = false;
+                    event = IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT;
+                } else {
+                    event = IdleStateEvent.ALL_IDLE_STATE_EVENT;
+                }
+                channelIdle(ctx, event);
+            }
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+}
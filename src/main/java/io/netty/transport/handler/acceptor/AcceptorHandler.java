@@ -4,6 +4,8 @@ package io.netty.transport.handler.acceptor;
 import io.netty.channel.*;
 import io.netty.transport.channel.WrapChannel;
 import io.netty.transport.exception.Signal;
+import io.netty.transport.message.Heartbeats;
+import io.netty.transport.processor.DispatchStage;
 import io.netty.transport.processor.ProviderProcessor;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
@@ -23,17 +25,28 @@ public class AcceptorHandler extends ChannelInboundHandlerAdapter {
     private static final AtomicInteger channelCounter    = new AtomicInteger(0);
     private final AtomicInteger              connectionCounter = new AtomicInteger(0);
     private ProviderProcessor processor;
+    private DispatchStage     dispatchStage;
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         Channel ch = ctx.channel();
 
+        if (Heartbeats.isHeartbeat(msg)) {
+            // 心跳只用于刷新空闲时间, 不交给 processor
+            ReferenceCountUtil.release(msg);
+            return;
+        }
         if (msg instanceof ProtoMessage && processor != null) {
             WrapChannel channel = WrapChannel.attachChannel(ch);
-            try {
-                processor.handleRequest(channel, (IProtoMessage) msg);
-            } catch (Throwable t) {
-                processor.handleException(channel, (ProtoMessage) msg, 1, t);
+            if (dispatchStage != null) {
+                // 在业务线程中处理, 消息由分发阶段retain
+                dispatchStage.dispatch(channel, (IProtoMessage) msg, processor);
+            } else {
+                try {
+                    processor.handleRequest(channel, (IProtoMessage) msg);
+                } catch (Throwable t) {
+                    processor.handleException(channel, (ProtoMessage) msg, 1, t);
+                }
             }
         } else {
             log.warn("接收到不支持的报文: {}, channel: {}.", msg.getClass(), ch);
@@ -70,14 +83,14 @@ public class AcceptorHandler extends ChannelInboundHandlerAdapter {
                     "{} is not writable, high water mask: {}, the number of flushed entries that are not written yet: {}.",
                     ch, config.getWriteBufferHighWaterMark(), ch.unsafe().outboundBuffer().size());
 
-            config.setAutoRead(false);
+            WrapChannel.attachChannel(ch).pauseRead(WrapChannel.PAUSE_UNWRITABLE);
         } else {
             // 曾经高于高水位线的OutboundBuffer现在已经低于WRITE_BUFFER_LOW_WATER_MARK了
             log.warn(
                     "{} is writable(rehabilitate), low water mask: {}, the number of flushed entries that are not written yet: {}.",
                     ch, config.getWriteBufferLowWaterMark(), ch.unsafe().outboundBuffer().size());
 
-            config.setAutoRead(true);
+            WrapChannel.attachChannel(ch).resumeRead(WrapChannel.PAUSE_UNWRITABLE);
         }
     }
 
@@ -104,4 +117,17 @@ public class AcceptorHandler extends ChannelInboundHandlerAdapter {
     public void processor(ProviderProcessor processor) {
         this.processor = processor;
     }
+
+    public DispatchStage dispatchStage() {
+        return dispatchStage;
+    }
+
+    /**
+     * 设置业务线程分发, 为 null 时直接在IO线程中处理.
+     *
+     * @see io.netty.transport.Acceptor#dispatchStage()
+     */
+    public void dispatchStage(DispatchStage dispatchStage) {
+        this.dispatchStage = dispatchStage;
+    }
 }
@@ -0,0 +1,84 @@
+package io.netty.transport.handler.acceptor;
+
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.handler.ProtoDatagramEncoder;
+import io.netty.transport.message.DatagramProtoMessage;
+import io.netty.transport.processor.DispatchStage;
+import io.netty.transport.processor.ProviderProcessor;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * UDP 模式下的 {@link AcceptorHandler}, 所有客户端共用一个 channel.
+ * <p>
+ * 在IO线程中处理时, 直接写出的 {@code IMessage} 会发给当前请求的发送方;
+ * 使用 {@link DispatchStage} 时响应必须通过
+ * {@link DatagramProtoMessage#reply(me.asu.socket.message.IMessage)} 指定地址.
+ * <p>
+ * 单个报文出错不会关闭 channel.
+ *
+ * @author Suk
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class UdpAcceptorHandler extends ChannelInboundHandlerAdapter {
+
+    private ProviderProcessor processor;
+    private DispatchStage     dispatchStage;
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Channel ch = ctx.channel();
+
+        if (msg instanceof DatagramProtoMessage && processor != null) {
+            WrapChannel channel = WrapChannel.attachChannel(ch);
+            DatagramProtoMessage message = (DatagramProtoMessage) msg;
+            if (dispatchStage != null) {
+                // 在业务线程中处理, 消息由分发阶段retain
+                dispatchStage.dispatch(channel, message, processor);
+            } else {
+                // 处理期间同步写出的普通响应由编码器发回给发送方
+                ch.attr(ProtoDatagramEncoder.REPLY_TO).set(message.sender());
+                try {
+                    processor.handleRequest(channel, message);
+                } catch (Throwable t) {
+                    processor.handleException(channel, message, 1, t);
+                } finally {
+                    ch.attr(ProtoDatagramEncoder.REPLY_TO).set(null);
+                }
+            }
+        } else {
+            log.warn("接收到不支持的报文: {}, channel: {}.", msg.getClass(), ch);
+        }
+        ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.error("捕获异常: {}, 通道: {}.", cause.getMessage(), ctx.channel());
+    }
+
+    public ProviderProcessor processor() {
+        return processor;
+    }
+
+    public void processor(ProviderProcessor processor) {
+        this.processor = processor;
+    }
+
+    public DispatchStage dispatchStage() {
+        return dispatchStage;
+    }
+
+    /**
+     * 设置业务线程分发, 为 null 时直接在IO线程中处理.
+     */
+    public void dispatchStage(DispatchStage dispatchStage) {
+        this.dispatchStage = dispatchStage;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Suk Honzeon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.netty.transport.handler.connector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同时进行中的重连数限制, 同一个 {@link io.netty.transport.Connector} 的所有 {@link ConnectionWatchdog} 共享.
+ * 拿不到许可的 watchdog 不会阻塞, 而是退避之后再试.
+ *
+ * @author Suk
+ */
+public class ConnectPermits {
+
+    private final int           maxPermits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ConnectPermits(int maxPermits) {
+        if (maxPermits < 1) {
+            throw new IllegalArgumentException("maxPermits: " + maxPermits + " (expected: > 0)");
+        }
+        this.maxPermits = maxPermits;
+    }
+
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= maxPermits) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int maxPermits() {
+        return maxPermits;
+    }
+}
@@ -29,7 +29,6 @@ import io.netty.transport.channel.WrapChannelGroup;
 import io.netty.transport.handler.ChannelHandlerHolder;
 import io.netty.util.*;
 import java.net.SocketAddress;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 import lombok.extern.slf4j.Slf4j;
@@ -38,6 +37,10 @@ import me.asu.util.NamedThreadFactory;
 
 /**
  * Connections watchdog.
+ * <p>
+ * 重连间隔使用 decorrelated jitter 指数退避: {@code min(maxBackoff, random(base, last * 3))},
+ * 避免后端重启时所有客户端同时重连. 设置了 {@link ConnectPermits} 时, 拿不到许可的重连会退避之后再试.
+ * 所有 watchdog 共享一个通知线程, 空闲时不占用线程.
  *
  * @author Suk
  */
@@ -51,23 +54,71 @@ public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter
     private static final int ST_STARTED = 1;
     private static final int ST_STOPPED = 2;
 
+    /**
+     * 重连退避的初始值.
+     */
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 200;
+    /**
+     * 重连退避的默认上限.
+     */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS  = 10000;
+
+    // watchdog 是 @Sharable 的, 单条链路不重连只能标记在 channel 上
+    private static final AttributeKey<Boolean> NO_RECONNECT_KEY =
+            AttributeKey.valueOf("watchdog.noReconnect");
+
+    private static final ExecutorService NOTIFY_EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("ConnectionWatchdog-Notify-Thread"));
+        executor.allowCoreThreadTimeOut(true);
+        NOTIFY_EXECUTOR = executor;
+    }
+
     private final Bootstrap        bootstrap;
+    // 重连专用的 bootstrap, 第一次重连时从 bootstrap clone, 之后不再修改, 可以并发connect
+    private volatile Bootstrap     reconnectBootstrap;
+    // do not get a new ChannelInitializer per reconnect.
+    private final ChannelInitializer<Channel> initializer = new ChannelInitializer<Channel>() {
+
+        @Override
+        protected void initChannel(Channel ch) throws Exception {
+            ch.pipeline().addLast(handlers());
+        }
+    };
     private final Timer            timer;
     private final SocketAddress    remoteAddress;
     private final WrapChannelGroup group;
+    private final ConnectPermits   permits;
+
+    private volatile int  state            = ST_STARTED;
+    private volatile int  attempts;
+    private volatile long backoffMillis;
+    private volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private List<ReconnectedListener> listeners = new CopyOnWriteArrayList<ReconnectedListener>();
 
-    private volatile int state = ST_STARTED;
-    private int attempts;
-    private List<ReconnectedListener> listeners = new ArrayList<ReconnectedListener>();
-    private ExecutorService es = Executors.newSingleThreadExecutor(new NamedThreadFactory("ConnectionWatchdog-Notify-Thread"));
     public ConnectionWatchdog(Bootstrap bootstrap,
                               Timer timer,
                               SocketAddress remoteAddress,
                               WrapChannelGroup group) {
+        this(bootstrap, timer, remoteAddress, group, null);
+    }
+
+    /**
+     * @param permits 同时进行中的重连数限制, 为 null 时不限制
+     */
+    public ConnectionWatchdog(Bootstrap bootstrap,
+                              Timer timer,
+                              SocketAddress remoteAddress,
+                              WrapChannelGroup group,
+                              ConnectPermits permits) {
         this.bootstrap = bootstrap;
         this.timer = timer;
         this.remoteAddress = remoteAddress;
         this.group = group;
+        this.permits = permits;
     }
 
     public boolean isStarted() {
@@ -80,9 +131,26 @@ public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter
 
     public void stop() {
         state = ST_STOPPED;
-        if (es != null) {
-            es.shutdown();
+    }
+
+    /**
+     * 标记这条链路断开后不再重连, 不影响同一个 watchdog 下的其他链路.
+     * 需要在 close 之前调用.
+     */
+    public static void skipReconnect(Channel channel) {
+        channel.attr(NO_RECONNECT_KEY).set(Boolean.TRUE);
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        if (maxBackoffMillis < DEFAULT_BASE_BACKOFF_MILLIS) {
+            throw new IllegalArgumentException("maxBackoffMillis: " + maxBackoffMillis
+                    + " (expected: >= " + DEFAULT_BASE_BACKOFF_MILLIS + ")");
         }
+        this.maxBackoffMillis = maxBackoffMillis;
     }
 
     @Override
@@ -92,17 +160,18 @@ public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter
             group.add(WrapChannel.attachChannel(ch));
         }
         attempts = 0;
+        backoffMillis = 0;
         log.debug("{} 连接 {}.", TAG, ch);
         ctx.fireChannelActive();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        boolean doReconnect = isReconnectNeeded();
+        boolean doReconnect = ctx.channel().attr(NO_RECONNECT_KEY).get() == null
+                && isReconnectNeeded();
         if (doReconnect) {
             attempts++;
-            long timeout = 200 * (attempts > 12 ? 12 : attempts);
-            timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
+            scheduleReconnect();
         }
         log.debug("{} 断开连接（{}）, 地址: {}, 重连标识: {}.", TAG, ctx.channel(), remoteAddress, doReconnect);
         ctx.fireChannelInactive();
@@ -114,21 +183,30 @@ public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter
             log.warn("{} 此地址（{}）已经取消重连。", TAG, remoteAddress);
             return;
         }
+        if (permits != null && !permits.tryAcquire()) {
+            // 同时进行中的重连太多, 退避之后再试
+            log.debug("{} 重连数已达上限（{}）, 地址: {}.", TAG, permits.maxPermits(), remoteAddress);
+            scheduleReconnect();
+            return;
+        }
         final ChannelFuture future;
-        synchronized (bootstrap) {
-            bootstrap.handler(new ChannelInitializer<Channel>() {
-                @Override
-                protected void initChannel(Channel ch) throws Exception {
-                    ChannelHandler[] handlers = handlers();
-                    ch.pipeline().addLast(handlers);
-                }
-            });
-            future = bootstrap.connect(remoteAddress);
+        try {
+            future = reconnectBootstrap().connect(remoteAddress);
+        } catch (Throwable t) {
+            if (permits != null) {
+                permits.release();
+            }
+            log.warn("{} 重新连接{}出错: {}。", TAG, remoteAddress, t.getMessage());
+            scheduleReconnect();
+            return;
         }
 
         future.addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture f) throws Exception {
+                if (permits != null) {
+                    permits.release();
+                }
                 boolean succeed = f.isSuccess();
                 log.warn("{} {}重新连接{}：{}。", TAG, f.channel(), remoteAddress, succeed ? "成功" : "失败");
                 if (!succeed) {
@@ -156,12 +234,38 @@ public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter
         }
     }
 
+    /**
+     * 共享的 bootstrap 的 clone, 在第一次重连之前设置的选项都会生效.
+     * 并发时可能 clone 多次, 结果都是一样的.
+     */
+    private Bootstrap reconnectBootstrap() {
+        Bootstrap boot = reconnectBootstrap;
+        if (boot == null) {
+            boot = bootstrap.clone().handler(initializer);
+            reconnectBootstrap = boot;
+        }
+        return boot;
+    }
+
+    /**
+     * decorrelated jitter: sleep = min(cap, random(base, sleep * 3)).
+     */
+    private void scheduleReconnect() {
+        long last = Math.max(backoffMillis, DEFAULT_BASE_BACKOFF_MILLIS);
+        long upper = Math.min(maxBackoffMillis, last * 3);
+        long timeout = upper > DEFAULT_BASE_BACKOFF_MILLIS
+                ? ThreadLocalRandom.current().nextLong(DEFAULT_BASE_BACKOFF_MILLIS, upper + 1)
+                : DEFAULT_BASE_BACKOFF_MILLIS;
+        backoffMillis = timeout;
+        timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
+    }
+
     private boolean isReconnectNeeded() {
         return isStarted() && (group == null || (group.size() < group.getCapacity()));
     }
 
     private void notifyReconnected() {
-        es.submit(new Runnable() {
+        NOTIFY_EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
                 for (ReconnectedListener listener : listeners) {
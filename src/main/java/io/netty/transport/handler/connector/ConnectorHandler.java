@@ -24,11 +24,14 @@ package io.netty.transport.handler.connector;
 
 
 import io.netty.channel.*;
+import io.netty.transport.channel.Invoker;
 import io.netty.transport.channel.WrapChannel;
 import io.netty.transport.exception.Signal;
+import io.netty.transport.processor.DispatchStage;
 import io.netty.transport.processor.ConsumerProcessor;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import me.asu.socket.message.IMessage;
@@ -47,11 +50,27 @@ import me.asu.socket.message.IMessage;
 public class ConnectorHandler extends ChannelInboundHandlerAdapter {
 
     private ConsumerProcessor processor;
+    /**
+     * 请求/响应关联, 被关联的响应交给等待的 future, 不再交给 processor.
+     */
+    private Invoker           invoker;
+    /**
+     * 业务线程分发, 为 null 时直接在IO线程中处理.
+     */
+    private DispatchStage     dispatchStage;
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         Channel ch = ctx.channel();
-        if (msg instanceof IMessage && processor != null) {
+        if (invoker != null && msg instanceof IMessage
+                && invoker.complete(WrapChannel.attachChannel(ch), (IMessage) msg)) {
+            // 响应的所有权已经转移给 future
+            return;
+        }
+        if (msg instanceof IMessage && processor != null && dispatchStage != null) {
+            // 在业务线程中处理, 消息由分发阶段retain
+            dispatchStage.dispatch(WrapChannel.attachChannel(ch), (IMessage) msg, processor);
+        } else if (msg instanceof IMessage && processor != null) {
             try {
                 processor.handleResponse(WrapChannel.attachChannel(ch), (IMessage) msg);
             } catch (Throwable t) {
@@ -59,8 +78,18 @@ public class ConnectorHandler extends ChannelInboundHandlerAdapter {
             }
         } else {
             log.warn("接收到不支持的报文: {}, channel: {}。", msg.getClass(), ch);
-            ReferenceCountUtil.release(msg);
         }
+        // zero-copy 模式下的消息持有帧的引用, 回调结束后释放
+        ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (invoker != null) {
+            // 不再等待超时, 已发出的请求立即失败
+            invoker.failAll(WrapChannel.attachChannel(ctx.channel()), new ClosedChannelException());
+        }
+        super.channelInactive(ctx);
     }
 
     @Override
@@ -76,14 +105,14 @@ public class ConnectorHandler extends ChannelInboundHandlerAdapter {
                             + "the number of flushed entries that are not written yet: {}.", ch,
                     config.getWriteBufferHighWaterMark(), ch.unsafe().outboundBuffer().size());
 
-            config.setAutoRead(false);
+            WrapChannel.attachChannel(ch).pauseRead(WrapChannel.PAUSE_UNWRITABLE);
         } else {
             // 曾经高于高水位线的OutboundBuffer现在已经低于WRITE_BUFFER_LOW_WATER_MARK了
             log.warn("{} is writable(rehabilitate), low water mask: {}, "
                             + "the number of flushed entries that are not written yet: {}.", ch,
                     config.getWriteBufferLowWaterMark(), ch.unsafe().outboundBuffer().size());
 
-            config.setAutoRead(true);
+            WrapChannel.attachChannel(ch).resumeRead(WrapChannel.PAUSE_UNWRITABLE);
         }
     }
 
@@ -23,23 +23,34 @@
 package io.netty.transport.handler.connector;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.transport.message.Heartbeats;
 
 /**
  * 心跳处理.
+ * <p>
+ * 心跳数据只编码一次, 每条链路发送的是它的 retainedDuplicate, 写完释放不影响共享的数据.
  */
 @ChannelHandler.Sharable
 public class ConnectorIdleStateTrigger extends ChannelInboundHandlerAdapter {
 
-    private ByteBuf HEARTBEAT_SEQUENCE;
+    private final ByteBuf HEARTBEAT_SEQUENCE;
+
+    /**
+     * 发送 {@link io.netty.transport.message.HeartbeatMessage}.
+     */
+    public ConnectorIdleStateTrigger() {
+        this(Heartbeats.heartbeatContent());
+    }
 
     public ConnectorIdleStateTrigger(ByteBuf heartbeatData) {
         if (heartbeatData == null || heartbeatData.readableBytes() < 1) {
             throw new IllegalArgumentException("心跳数据不能为空。");
         }
-        HEARTBEAT_SEQUENCE = heartbeatData;
+        HEARTBEAT_SEQUENCE = Unpooled.unreleasableBuffer(heartbeatData);
     }
 
     @Override
@@ -47,7 +58,7 @@ public class ConnectorIdleStateTrigger extends ChannelInboundHandlerAdapter {
         if (evt instanceof IdleStateEvent) {
             IdleState state = ((IdleStateEvent) evt).state();
             if (state == IdleState.WRITER_IDLE) {
-                ctx.writeAndFlush(HEARTBEAT_SEQUENCE);
+                ctx.writeAndFlush(HEARTBEAT_SEQUENCE.retainedDuplicate(), ctx.voidPromise());
             }
         } else {
             super.userEventTriggered(ctx, evt);
@@ -0,0 +1,150 @@
+package io.netty.transport.message;
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.codec.MarshalFactory;
+import io.netty.util.ReferenceCounted;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * body 直接引用 {@link ByteBuf} 的 {@link ProtoMessage}, 不会产生 byte[] 拷贝.
+ * <p>
+ * 引用计数委托给 body, 使用完后必须 {@link #release()},
+ * {@link io.netty.transport.handler.acceptor.AcceptorHandler} 和
+ * {@link io.netty.transport.handler.connector.ConnectorHandler}
+ * 在 channelRead 之后会自动释放, 如需在回调之外继续持有, 请先 {@link #retain()}.
+ *
+ * @author Suk
+ */
+public class ByteBufProtoMessage extends ProtoMessage implements ReferenceCounted {
+
+    /**
+     * cmdId(4) + seqId(4) + bodyLen(4) + cmdType(1) + bodyType(1) + code(1) + ttl(1).
+     */
+    public static final int HEADER_LENGTH = 16;
+
+    private final ByteBuf content;
+
+    public ByteBufProtoMessage(ByteBuf content) {
+        if (content == null) {
+            throw new NullPointerException("content");
+        }
+        this.content = content;
+        getHeader().setBodyLen(content.readableBytes());
+    }
+
+    /**
+     * 从一个完整的帧解析 header, body 为帧的 slice, 与帧共享引用计数, 不做任何拷贝.
+     *
+     * @param frame 完整的帧, 所有权转移给返回的消息
+     * @return 消息, 或者帧不完整时返回 null
+     */
+    public static ByteBufProtoMessage wrap(ByteBuf frame) {
+        ByteBuf body = body(frame);
+        if (body == null) {
+            return null;
+        }
+        ByteBufProtoMessage message = new ByteBufProtoMessage(body);
+        message.readHeader(frame);
+        return message;
+    }
+
+    /**
+     * 帧中 body 部分的 slice, 帧不完整时返回 null.
+     */
+    protected static ByteBuf body(ByteBuf frame) {
+        int idx = frame.readerIndex();
+        int length = frame.readableBytes();
+        if (length < HEADER_LENGTH) {
+            return null;
+        }
+        int bodyLen = frame.getInt(idx + 8);
+        if (bodyLen < 0 || bodyLen > length - HEADER_LENGTH) {
+            return null;
+        }
+        return frame.slice(idx + HEADER_LENGTH, bodyLen);
+    }
+
+    /**
+     * 从帧中读取 header, 不改变帧的 readerIndex.
+     */
+    protected void readHeader(ByteBuf frame) {
+        int idx = frame.readerIndex();
+        getHeader().setCmdId(frame.getInt(idx));
+        getHeader().setSeqId(frame.getInt(idx + 4));
+        getHeader().setCmdType(frame.getByte(idx + 12));
+        getHeader().setBodyType(frame.getByte(idx + 13));
+        getHeader().setCode(frame.getByte(idx + 14));
+        getHeader().setTtl(frame.getByte(idx + 15));
+    }
+
+    /**
+     * body, 调用本方法不影响引用计数.
+     */
+    public ByteBuf content() {
+        return content;
+    }
+
+    /**
+     * 按 bodyType 对应的 {@link io.netty.transport.codec.StreamMarshal} 直接从 body 反编组,
+     * 不影响 body 的 readerIndex.
+     */
+    public <T> T unmarshal(Class<T> type) {
+        return MarshalFactory.getStream(BodyTypes.marshalType(getHeader().getBodyType()))
+                             .unmarshal(content.duplicate(), type);
+    }
+
+    /**
+     * 兼容 byte[] 接口, 每次调用都会拷贝一次 body, 热点路径请使用 {@link #content()}.
+     */
+    @Override
+    public byte[] getBody() {
+        return ByteBufUtil.getBytes(content);
+    }
+
+    @Override
+    public int getPackageLength() {
+        return HEADER_LENGTH + content.readableBytes();
+    }
+
+    @Override
+    public int refCnt() {
+        return content.refCnt();
+    }
+
+    @Override
+    public ByteBufProtoMessage retain() {
+        content.retain();
+        return this;
+    }
+
+    @Override
+    public ByteBufProtoMessage retain(int increment) {
+        content.retain(increment);
+        return this;
+    }
+
+    @Override
+    public ByteBufProtoMessage touch() {
+        content.touch();
+        return this;
+    }
+
+    @Override
+    public ByteBufProtoMessage touch(Object hint) {
+        content.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return content.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return content.release(decrement);
+    }
+}
@@ -0,0 +1,60 @@
+package io.netty.transport.message;
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.AddressedEnvelope;
+import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.socket.DatagramPacket;
+import java.net.InetSocketAddress;
+import me.asu.socket.message.IMessage;
+
+/**
+ * 从 {@link DatagramPacket} 解码的消息, body 是报文内容的 slice, 记录发送方地址用于回复.
+ *
+ * @author Suk
+ */
+public class DatagramProtoMessage extends ByteBufProtoMessage {
+
+    private final InetSocketAddress sender;
+    private final InetSocketAddress recipient;
+
+    public DatagramProtoMessage(ByteBuf content, InetSocketAddress sender,
+                                InetSocketAddress recipient) {
+        super(content);
+        this.sender = sender;
+        this.recipient = recipient;
+    }
+
+    /**
+     * 解析报文, 不做拷贝, 消息与报文共享引用计数(不会增加引用计数).
+     *
+     * @return 消息, 或者报文不完整时返回 null
+     */
+    public static DatagramProtoMessage wrap(DatagramPacket packet) {
+        ByteBuf frame = packet.content();
+        ByteBuf body = body(frame);
+        if (body == null) {
+            return null;
+        }
+        DatagramProtoMessage message = new DatagramProtoMessage(body, packet.sender(),
+                packet.recipient());
+        message.readHeader(frame);
+        return message;
+    }
+
+    public InetSocketAddress sender() {
+        return sender;
+    }
+
+    public InetSocketAddress recipient() {
+        return recipient;
+    }
+
+    /**
+     * 发回给发送方的响应, 通过 {@link io.netty.transport.channel.WrapChannel#write(Object)} 发送.
+     */
+    public AddressedEnvelope<IMessage, InetSocketAddress> reply(IMessage response) {
+        return new DefaultAddressedEnvelope<IMessage, InetSocketAddress>(response, sender,
+                recipient);
+    }
+}
@@ -10,7 +10,13 @@ import me.asu.socket.message.ProtoMessage;
  */
 public class HeartbeatMessage extends ProtoMessage {
 
+    /**
+     * 心跳专用的 cmdType, 业务报文不能使用.
+     */
+    public static final byte CMD_TYPE = (byte) 0xFF;
+
     private HeartbeatMessage() {
+        getHeader().setCmdType(CMD_TYPE);
         getHeader().setCmdId(0);
         getHeader().setSeqId(0);
         getHeader().setBodyLen(0);
@@ -0,0 +1,52 @@
+package io.netty.transport.message;
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.transport.handler.ProtoMessageEncoder;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 心跳工具.
+ * <p>
+ * {@link HeartbeatMessage} 只编码一次, 保存在不可释放的 direct buffer 中,
+ * 每次发送 {@link #heartbeatContent()} 得到的 duplicate, 不需要重新编码和分配缓冲区.
+ *
+ * @author Suk
+ */
+public final class Heartbeats {
+
+    private static final ByteBuf HEARTBEAT_BUF;
+
+    static {
+        HeartbeatMessage heartbeat = HeartbeatMessage.getInstance();
+        ByteBuf buf = Unpooled.directBuffer(ByteBufProtoMessage.HEADER_LENGTH);
+        ProtoMessageEncoder.writeMessage(heartbeat, buf);
+        HEARTBEAT_BUF = Unpooled.unreleasableBuffer(buf.asReadOnly());
+    }
+
+    private Heartbeats() {
+    }
+
+    /**
+     * 编码后的心跳, 可以直接写入 channel, 写完之后的释放不会影响共享的缓冲区.
+     */
+    public static ByteBuf heartbeatContent() {
+        return HEARTBEAT_BUF.retainedDuplicate();
+    }
+
+    /**
+     * 是否心跳: cmdType 为保留的 {@link HeartbeatMessage#CMD_TYPE}, 不根据 cmdId 等字段推断,
+     * cmdId 和 seqId 为0的业务报文不会被当作心跳.
+     */
+    public static boolean isHeartbeat(Object msg) {
+        if (msg == HeartbeatMessage.getInstance()) {
+            return true;
+        }
+        if (!(msg instanceof ProtoMessage)) {
+            return false;
+        }
+        ProtoMessage message = (ProtoMessage) msg;
+        return message.getHeader().getCmdType() == HeartbeatMessage.CMD_TYPE;
+    }
+}
@@ -0,0 +1,84 @@
+package io.netty.transport.message;
+
+
+import io.netty.buffer.ByteBuf;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.codec.MarshalFactory;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * body 为未编组对象的 {@link ProtoMessage}.
+ * <p>
+ * {@link io.netty.transport.handler.ProtoMessageEncoder} 用 {@link MarshalFactory#getStream(int)}
+ * 直接把对象编组到输出的 ByteBuf 中, 之后回填 bodyLen, 不产生中间的 byte[].
+ * <p>
+ * 编组之前无法知道 body 的长度, {@link #getPackageLength()} 返回按 sizeHint 估算的长度,
+ * 用于写缓冲水位线和编码时的初始容量.
+ *
+ * @author Suk
+ */
+public class ObjectProtoMessage extends ProtoMessage {
+
+    /**
+     * 无法估算时的 body 长度.
+     */
+    public static final int DEFAULT_SIZE_HINT = 256;
+
+    private final Object content;
+    private final int    sizeHint;
+
+    /**
+     * @param content  body 对象
+     * @param bodyType 编组类型, 见 {@link io.netty.transport.codec.Marshal#type()}
+     */
+    public ObjectProtoMessage(Object content, int bodyType) {
+        this(content, bodyType, sizeHint(content));
+    }
+
+    /**
+     * @param content  body 对象
+     * @param bodyType 编组类型, 见 {@link io.netty.transport.codec.Marshal#type()}
+     * @param sizeHint 编组后 body 的估计长度
+     */
+    public ObjectProtoMessage(Object content, int bodyType, int sizeHint) {
+        if (sizeHint < 0) {
+            throw new IllegalArgumentException("sizeHint: " + sizeHint + " (expected: >= 0)");
+        }
+        this.content = content;
+        this.sizeHint = sizeHint;
+        getHeader().setBodyType((byte) bodyType);
+    }
+
+    private static int sizeHint(Object content) {
+        if (content == null) {
+            return 0;
+        }
+        if (content instanceof CharSequence) {
+            return ((CharSequence) content).length();
+        }
+        if (content instanceof byte[]) {
+            return ((byte[]) content).length;
+        }
+        if (content instanceof ByteBuf) {
+            return ((ByteBuf) content).readableBytes();
+        }
+        return DEFAULT_SIZE_HINT;
+    }
+
+    public Object content() {
+        return content;
+    }
+
+    /**
+     * 兼容 byte[] 接口, 每次调用都会编组一次.
+     */
+    @Override
+    public byte[] getBody() {
+        return MarshalFactory.get(BodyTypes.marshalType(getHeader().getBodyType())).marshal(content);
+    }
+
+    @Override
+    public int getPackageLength() {
+        return ByteBufProtoMessage.HEADER_LENGTH + sizeHint;
+    }
+}
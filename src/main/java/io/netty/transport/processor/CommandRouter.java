@@ -0,0 +1,320 @@
+package io.netty.transport.processor;
+
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.exception.InvokeTimeoutException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.IMessage;
+import me.asu.socket.message.ProtoMessage;
+
+/**
+ * 按 cmdId 路由的 {@link ProviderProcessor}.
+ * <p>
+ * [0, {@link #DENSE_SIZE}) 范围内的 cmdId 用数组直接索引, 其他的用 int 开放寻址表,
+ * 注册时 copy-on-write, 查找不加锁不装箱.
+ * 每个命令可以有自己的线程池和超时时间, 慢命令可以隔离到单独的线程池, 并且有独立的处理统计.
+ * </p>
+ * <ul>
+ * <li>未注册的 cmdId 交给 fallback, 没有 fallback 时以 {@link #STATUS_UNKNOWN_COMMAND} 调用
+ * handleException.</li>
+ * <li>处理时间超过 timeout 时以 {@link #STATUS_TIMEOUT} 调用该命令的 handleException,
+ * 处理本身不会被中断. 超时和处理失败只会回调其中先发生的一个, 请求在两者都结束之前保持 retain;
+ * 已经超时的处理器自己写出的响应无法撤回.</li>
+ * </ul>
+ *
+ * @author Suk
+ */
+@Slf4j
+public class CommandRouter implements ProviderProcessor {
+
+    /**
+     * 处理超时.
+     */
+    public static final int STATUS_TIMEOUT         = 3;
+    /**
+     * 未注册的命令.
+     */
+    public static final int STATUS_UNKNOWN_COMMAND = 4;
+
+    /**
+     * 数组直接索引的 cmdId 范围.
+     */
+    public static final int DENSE_SIZE = 1024;
+
+    private final    Timer               timer;
+    private volatile Route[]             dense  = new Route[DENSE_SIZE];
+    private volatile IntObjectMap<Route> sparse = new IntObjectHashMap<Route>();
+    private volatile ProviderProcessor   fallback;
+
+    public CommandRouter() {
+        this(null);
+    }
+
+    /**
+     * @param timer 用于命令超时, 为 null 时不支持超时
+     */
+    public CommandRouter(Timer timer) {
+        this.timer = timer;
+    }
+
+    public CommandRouter register(int cmdId, ProviderProcessor processor) {
+        return register(cmdId, processor, null, 0);
+    }
+
+    /**
+     * 注册命令, 已经存在时替换.
+     *
+     * @param cmdId         命令
+     * @param processor     处理器
+     * @param executor      处理线程池, 为 null 时在调用线程中处理
+     * @param timeoutMillis 超时时间, 小于等于0时不超时
+     * @return self
+     */
+    public synchronized CommandRouter register(int cmdId, ProviderProcessor processor,
+                                               Executor executor, long timeoutMillis) {
+        if (processor == null) {
+            throw new NullPointerException("processor");
+        }
+        if (timeoutMillis > 0 && timer == null) {
+            throw new IllegalStateException("timeout requires a timer");
+        }
+        Route route = new Route(processor, executor, timeoutMillis, new CommandStats(cmdId));
+        if (cmdId >= 0 && cmdId < DENSE_SIZE) {
+            Route[] newDense = dense.clone();
+            newDense[cmdId] = route;
+            dense = newDense;
+        } else {
+            IntObjectMap<Route> newSparse = new IntObjectHashMap<Route>(sparse.size() + 1);
+            newSparse.putAll(sparse);
+            newSparse.put(cmdId, route);
+            sparse = newSparse;
+        }
+        return this;
+    }
+
+    public synchronized boolean unregister(int cmdId) {
+        if (cmdId >= 0 && cmdId < DENSE_SIZE) {
+            if (dense[cmdId] == null) {
+                return false;
+            }
+            Route[] newDense = dense.clone();
+            newDense[cmdId] = null;
+            dense = newDense;
+            return true;
+        }
+        if (!sparse.containsKey(cmdId)) {
+            return false;
+        }
+        IntObjectMap<Route> newSparse = new IntObjectHashMap<Route>(sparse.size());
+        newSparse.putAll(sparse);
+        newSparse.remove(cmdId);
+        sparse = newSparse;
+        return true;
+    }
+
+    public ProviderProcessor fallback() {
+        return fallback;
+    }
+
+    /**
+     * 未注册命令的处理器.
+     */
+    public CommandRouter fallback(ProviderProcessor fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    /**
+     * 命令的统计, 未注册时返回 null.
+     */
+    public CommandStats stats(int cmdId) {
+        Route route = route(cmdId);
+        return route == null ? null : route.stats;
+    }
+
+    /**
+     * 所有已注册命令的统计.
+     */
+    public List<CommandStats> stats() {
+        List<CommandStats> result = new ArrayList<CommandStats>();
+        for (Route route : dense) {
+            if (route != null) {
+                result.add(route.stats);
+            }
+        }
+        for (Route route : sparse.values()) {
+            result.add(route.stats);
+        }
+        return result;
+    }
+
+    @Override
+    public void handleRequest(WrapChannel channel, IMessage request) throws Exception {
+        Route route = route(request);
+        if (route == null) {
+            ProviderProcessor fallback = this.fallback;
+            if (fallback != null) {
+                fallback.handleRequest(channel, request);
+            } else {
+                handleException(channel, request, STATUS_UNKNOWN_COMMAND,
+                        new UnsupportedOperationException("unknown command: " + cmdId(request)));
+            }
+            return;
+        }
+        if (route.executor == null) {
+            route.process(channel, request);
+        } else {
+            route.execute(channel, request);
+        }
+    }
+
+    @Override
+    public void handleException(WrapChannel channel, IMessage request, int status,
+                                Throwable cause) {
+        Route route = route(request);
+        ProviderProcessor processor = route != null ? route.processor : fallback;
+        if (processor != null) {
+            processor.handleException(channel, request, status, cause);
+        } else {
+            log.error("处理命令({})失败, status: {}, channel: {}, 异常: {}.", cmdId(request), status,
+                    channel, cause.toString());
+        }
+    }
+
+    private Route route(IMessage request) {
+        if (!(request instanceof ProtoMessage)) {
+            return null;
+        }
+        return route(((ProtoMessage) request).getHeader().getCmdId());
+    }
+
+    private Route route(int cmdId) {
+        if (cmdId >= 0 && cmdId < DENSE_SIZE) {
+            return dense[cmdId];
+        }
+        return sparse.get(cmdId);
+    }
+
+    private static Object cmdId(IMessage request) {
+        return request instanceof ProtoMessage ? ((ProtoMessage) request).getHeader().getCmdId()
+                : request;
+    }
+
+    private final class Route {
+
+        final ProviderProcessor processor;
+        final Executor          executor;
+        final long              timeoutMillis;
+        final CommandStats      stats;
+
+        Route(ProviderProcessor processor, Executor executor, long timeoutMillis,
+              CommandStats stats) {
+            this.processor = processor;
+            this.executor = executor;
+            this.timeoutMillis = timeoutMillis;
+            this.stats = stats;
+        }
+
+        void execute(final WrapChannel channel, final IMessage request) {
+            ReferenceCountUtil.retain(request);
+            try {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            process(channel, request);
+                        } finally {
+                            ReferenceCountUtil.release(request);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                ReferenceCountUtil.release(request);
+                stats.rejected();
+                processor.handleException(channel, request, DispatchStage.STATUS_REJECTED, e);
+            }
+        }
+
+        void process(WrapChannel channel, IMessage request) {
+            TimeoutTask task = null;
+            Timeout timeout = null;
+            if (timeoutMillis > 0) {
+                task = new TimeoutTask(channel, request);
+                // 超时任务持有一个引用, 由先结束的一方之外的另一方释放
+                ReferenceCountUtil.retain(request);
+                try {
+                    timeout = timer.newTimeout(task, timeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (RuntimeException e) {
+                    ReferenceCountUtil.release(request);
+                    throw e;
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                processor.handleRequest(channel, request);
+            } catch (Throwable t) {
+                stats.failed();
+                if (task == null || task.complete()) {
+                    processor.handleException(channel, request, DispatchStage.STATUS_FAILED, t);
+                }
+            } finally {
+                stats.record(System.nanoTime() - start);
+                if (task != null) {
+                    task.complete();
+                    if (timeout.cancel()) {
+                        // 超时任务不会再执行
+                        ReferenceCountUtil.release(request);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 超时任务, 自身的值表示请求是否已经结束(处理完成或者超时).
+         */
+        private final class TimeoutTask extends AtomicBoolean implements TimerTask {
+
+            private static final long serialVersionUID = 2315863270741869204L;
+
+            private final WrapChannel channel;
+            private final IMessage    request;
+
+            TimeoutTask(WrapChannel channel, IMessage request) {
+                this.channel = channel;
+                this.request = request;
+            }
+
+            /**
+             * 标记请求结束, 第一次标记时返回 true.
+             */
+            boolean complete() {
+                return compareAndSet(false, true);
+            }
+
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                try {
+                    if (complete()) {
+                        stats.timedOut();
+                        processor.handleException(channel, request, STATUS_TIMEOUT,
+                                new InvokeTimeoutException(
+                                        "处理命令(" + stats.cmdId() + ")超时(" + timeoutMillis + "ms)"));
+                    }
+                } finally {
+                    ReferenceCountUtil.release(request);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.netty.transport.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 单个命令的处理统计, 多线程累加无锁.
+ *
+ * @author Suk
+ */
+public class CommandStats {
+
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    private final int             cmdId;
+    private final LongAdder       count      = new LongAdder();
+    private final LongAdder       failures   = new LongAdder();
+    private final LongAdder       timeouts   = new LongAdder();
+    private final LongAdder       rejections = new LongAdder();
+    private final LongAdder       totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos   = new LongAccumulator(MAX, 0L);
+
+    public CommandStats(int cmdId) {
+        this.cmdId = cmdId;
+    }
+
+    void record(long elapsedNanos) {
+        count.increment();
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    void failed() {
+        failures.increment();
+    }
+
+    void timedOut() {
+        timeouts.increment();
+    }
+
+    void rejected() {
+        rejections.increment();
+    }
+
+    public int cmdId() {
+        return cmdId;
+    }
+
+    /**
+     * 处理完成的请求数, 包括失败的.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    public long averageNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * 清零.
+     */
+    public void reset() {
+        count.reset();
+        failures.reset();
+        timeouts.reset();
+        rejections.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandStats{" + "cmdId=" + cmdId + ", count=" + count() + ", failures="
+                + failures() + ", timeouts=" + timeouts() + ", rejections=" + rejections()
+                + ", avg=" + TimeUnit.NANOSECONDS.toMicros(averageNanos()) + "us, max="
+                + TimeUnit.NANOSECONDS.toMicros(maxNanos()) + "us}";
+    }
+}
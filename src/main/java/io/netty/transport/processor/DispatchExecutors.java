@@ -0,0 +1,101 @@
+package io.netty.transport.processor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.util.NamedThreadFactory;
+
+/**
+ * {@link DispatchStage} 的线程池.
+ * <p>虚拟线程通过反射创建, 在JDK 21以下的运行时退化为按需创建的平台线程池,
+ * 所以同一个jar可以运行在不同版本的JDK上.</p>
+ *
+ * @author Suk
+ */
+@Slf4j
+public final class DispatchExecutors {
+
+    private static final Method NEW_VIRTUAL_BUILDER;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (Throwable t) {
+            log.debug("虚拟线程不可用: {}.", t.toString());
+            ofVirtual = null;
+        }
+        NEW_VIRTUAL_BUILDER = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private DispatchExecutors() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程.
+     */
+    public static boolean isVirtualThreadAvailable() {
+        return NEW_VIRTUAL_BUILDER != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的线程池, 不支持虚拟线程时返回按需创建平台线程的线程池.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        if (NEW_VIRTUAL_BUILDER != null) {
+            try {
+                Object builder = NEW_VIRTUAL_BUILDER.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name + "-", 0L);
+                ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (Throwable t) {
+                log.warn("创建虚拟线程池失败, 使用平台线程: {}.", t.toString());
+            }
+        }
+        return Executors.newCachedThreadPool(new NamedThreadFactory(name));
+    }
+
+    /**
+     * 按模式创建 {@link DispatchStage}, {@link DispatchMode#IO_THREAD} 返回 null.
+     *
+     * @param mode       线程模型
+     * @param nThreads   {@link DispatchMode#THREAD_POOL} 的线程数
+     * @param maxPending 未处理完的消息数上限, 同时是线程池的队列长度
+     * @param ordered    是否按连接保序
+     * @param name       线程名
+     */
+    public static DispatchStage newDispatchStage(DispatchMode mode, int nThreads, int maxPending,
+                                                 boolean ordered, String name) {
+        if (mode == null) {
+            return null;
+        }
+        switch (mode) {
+            case IO_THREAD:
+                return null;
+            case THREAD_POOL:
+                return new DispatchStage(
+                        DispatchStage.newBoundedExecutor(nThreads, maxPending, name), maxPending,
+                        ordered);
+            case VIRTUAL_THREAD:
+                return new DispatchStage(newVirtualThreadExecutor(name), maxPending, ordered);
+            default:
+                throw new IllegalStateException("invalid dispatch mode: " + mode);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.netty.transport.processor;
+
+/**
+ * 消息处理的线程模型.
+ *
+ * @author Suk
+ */
+public enum DispatchMode {
+    /**
+     * 直接在Netty的IO线程中处理, 默认.
+     */
+    IO_THREAD,
+    /**
+     * 在有界的业务线程池中处理.
+     */
+    THREAD_POOL,
+    /**
+     * 每个消息一个虚拟线程(JDK 21+), 适合阻塞的processor(JDBC, 文件IO等),
+     * 低版本JDK退化为按需创建的平台线程.
+     */
+    VIRTUAL_THREAD
+}
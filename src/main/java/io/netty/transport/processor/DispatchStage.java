@@ -0,0 +1,292 @@
+package io.netty.transport.processor;
+
+import io.netty.transport.channel.WrapChannel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import me.asu.socket.message.IMessage;
+import me.asu.util.NamedThreadFactory;
+
+/**
+ * 业务线程分发.
+ * <p>
+ * 把 {@link ProviderProcessor#handleRequest(WrapChannel, IMessage)} 和
+ * {@link ConsumerProcessor#handleResponse(WrapChannel, IMessage)} 从Netty的IO线程转移到业务线程池,
+ * 避免一个慢的processor阻塞同一个event loop上的所有连接.
+ * </p>
+ * <ul>
+ * <li>ordered 模式下同一个 {@link WrapChannel} 的消息按接收顺序串行处理, 不同连接之间并行.</li>
+ * <li>未处理完的消息数达到 maxPending 时暂停提交消息的连接的读取({@link WrapChannel#PAUSE_DISPATCH}),
+ * 降到 maxPending 的一半以下时恢复.</li>
+ * <li>processor抛出的异常交给 {@link ProviderProcessor#handleException(WrapChannel, IMessage, int, Throwable)},
+ * status 为 {@link #STATUS_FAILED}; 线程池拒绝执行时 status 为 {@link #STATUS_REJECTED}.</li>
+ * </ul>
+ *
+ * @author Suk
+ */
+@Slf4j
+public class DispatchStage {
+
+    /**
+     * processor 处理失败.
+     */
+    public static final int STATUS_FAILED   = 1;
+    /**
+     * 线程池拒绝执行.
+     */
+    public static final int STATUS_REJECTED = 2;
+
+    /**
+     * 每次最多连续处理同一个连接的消息数, 之后让出线程.
+     */
+    private static final int MAX_SERIAL_BATCH = 64;
+
+    private static final AttributeKey<SerialExecutor> SERIAL_EXECUTOR_KEY = AttributeKey
+            .valueOf("dispatch.serial.executor");
+
+    private final Executor           executor;
+    private final int                maxPending;
+    private final int                resumeThreshold;
+    private final boolean            ordered;
+    private final AtomicInteger      pending   = new AtomicInteger(0);
+    private final Queue<WrapChannel> suspended = new ConcurrentLinkedQueue<WrapChannel>();
+
+    public DispatchStage(Executor executor, int maxPending, boolean ordered) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending: " + maxPending + " (expected: > 0)");
+        }
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.resumeThreshold = maxPending >>> 1;
+        this.ordered = ordered;
+    }
+
+    /**
+     * 创建有界的业务线程池, 队列满时拒绝执行.
+     */
+    public static ExecutorService newBoundedExecutor(int nThreads, int queueCapacity, String name) {
+        return new ThreadPoolExecutor(nThreads, nThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new NamedThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 在业务线程中处理请求, 请求会被 retain, 处理完后 release.
+     */
+    public void dispatch(final WrapChannel channel, final IMessage request,
+                         final ProviderProcessor processor) {
+        submit(new DispatchTask(channel, request) {
+
+            @Override
+            void process() {
+                try {
+                    processor.handleRequest(channel, request);
+                } catch (Throwable t) {
+                    processor.handleException(channel, request, STATUS_FAILED, t);
+                }
+            }
+
+            @Override
+            void reject(Throwable cause) {
+                processor.handleException(channel, request, STATUS_REJECTED, cause);
+            }
+        });
+    }
+
+    /**
+     * 在业务线程中处理响应, 响应会被 retain, 处理完后 release.
+     */
+    public void dispatch(final WrapChannel channel, final IMessage response,
+                         final ConsumerProcessor processor) {
+        submit(new DispatchTask(channel, response) {
+
+            @Override
+            void process() {
+                try {
+                    processor.handleResponse(channel, response);
+                } catch (Throwable t) {
+                    log.error("发生错误: {}, 在 {} #handleResponse()。", t.getMessage(), channel);
+                }
+            }
+
+            @Override
+            void reject(Throwable cause) {
+                log.error("丢弃响应: {}, channel: {}。", response, channel);
+            }
+        });
+    }
+
+    /**
+     * 关闭线程池, 如果 executor 是 {@link ExecutorService}.
+     */
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * 未处理完的消息数.
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    void submit(DispatchTask task) {
+        ReferenceCountUtil.retain(task.msg);
+        if (pending.incrementAndGet() >= maxPending) {
+            suspend(task.channel);
+        }
+        try {
+            if (ordered) {
+                serialExecutor(task.channel).execute(task);
+            } else {
+                executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            log.warn("业务线程池拒绝执行, channel: {}.", task.channel);
+            try {
+                task.reject(e);
+            } finally {
+                task.done();
+            }
+        }
+    }
+
+    private void suspend(WrapChannel channel) {
+        if (channel.pauseRead(WrapChannel.PAUSE_DISPATCH)) {
+            log.warn("分发队列已满({}), 暂停读取: {}.", maxPending, channel);
+            suspended.offer(channel);
+        }
+        // 避免在 offer 之前所有任务已经完成而错过恢复
+        if (pending.get() <= resumeThreshold) {
+            resumeAll();
+        }
+    }
+
+    private void resumeAll() {
+        WrapChannel channel;
+        while ((channel = suspended.poll()) != null) {
+            // 因为不可写等其它原因暂停的连接不会被恢复
+            channel.resumeRead(WrapChannel.PAUSE_DISPATCH);
+        }
+    }
+
+    private SerialExecutor serialExecutor(WrapChannel channel) {
+        Attribute<SerialExecutor> attr = channel.channel().attr(SERIAL_EXECUTOR_KEY);
+        SerialExecutor serialExecutor = attr.get();
+        if (serialExecutor == null) {
+            SerialExecutor newExecutor = new SerialExecutor(executor);
+            serialExecutor = attr.setIfAbsent(newExecutor);
+            if (serialExecutor == null) {
+                serialExecutor = newExecutor;
+            }
+        }
+        return serialExecutor;
+    }
+
+    abstract class DispatchTask implements Runnable {
+
+        final WrapChannel channel;
+        final IMessage    msg;
+
+        DispatchTask(WrapChannel channel, IMessage msg) {
+            this.channel = channel;
+            this.msg = msg;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process();
+            } finally {
+                done();
+            }
+        }
+
+        void done() {
+            ReferenceCountUtil.release(msg);
+            if (pending.decrementAndGet() <= resumeThreshold && !suspended.isEmpty()) {
+                resumeAll();
+            }
+        }
+
+        abstract void process();
+
+        abstract void reject(Throwable cause);
+    }
+
+    /**
+     * 同一个连接的任务串行执行, 不同连接之间共享线程池.
+     */
+    private static final class SerialExecutor implements Executor, Runnable {
+
+        private final Executor        executor;
+        private final Queue<Runnable> tasks   = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicBoolean   running = new AtomicBoolean(false);
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.offer(task);
+            if (running.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    running.set(false);
+                    tasks.remove(task);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (; ; ) {
+                Runnable task;
+                int n = 0;
+                while (n < MAX_SERIAL_BATCH && (task = tasks.poll()) != null) {
+                    task.run();
+                    n++;
+                }
+                if (n == MAX_SERIAL_BATCH && !tasks.isEmpty()) {
+                    // 让出线程给其他连接
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        continue;
+                    }
+                }
+                running.set(false);
+                // 避免在 set(false) 之前 offer 的任务没有被调度
+                if (tasks.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
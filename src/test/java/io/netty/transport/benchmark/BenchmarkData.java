@@ -0,0 +1,93 @@
+package io.netty.transport.benchmark;
+
+import io.netty.transport.codec.JsonMarshal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 性能测试使用的业务对象, 字段组成与常见的订单消息相近.
+ *
+ * @author Suk
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public enum Status {
+        CREATED, PAID, SHIPPED
+    }
+
+    public static class Item {
+
+        public String sku;
+        public int    quantity;
+        public double price;
+    }
+
+    public static class Order {
+
+        public long         id;
+        public String       customer;
+        public Status       status;
+        public BigDecimal   amount;
+        public Date         created;
+        public List<String> tags;
+        public List<Item>   items;
+    }
+
+    public static class OrderBatch {
+
+        public List<Order> orders;
+    }
+
+    public static OrderBatch batch(int count) {
+        OrderBatch batch = new OrderBatch();
+        batch.orders = orders(count);
+        return batch;
+    }
+
+    public static Order order(int i) {
+        Order order = new Order();
+        order.id = 1000000L + i;
+        order.customer = "customer-" + (i % 97) + "@example.com";
+        order.status = Status.values()[i % 3];
+        order.amount = new BigDecimal(i * 17 + ".25");
+        order.created = new Date(1500000000000L + i * 1000L);
+        order.tags = Arrays.asList("priority-" + (i % 5), "region-" + (i % 7));
+        order.items = new ArrayList<Item>();
+        for (int j = 0; j < 3; j++) {
+            Item item = new Item();
+            item.sku = "SKU-" + (i * 3 + j);
+            item.quantity = j + 1;
+            item.price = 9.99 * (j + 1);
+            order.items.add(item);
+        }
+        return order;
+    }
+
+    public static List<Order> orders(int count) {
+        List<Order> orders = new ArrayList<Order>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(order(i));
+        }
+        return orders;
+    }
+
+    /**
+     * JsonMarshal 输出的订单列表, 截取前 size 个字节.
+     */
+    public static byte[] json(int size) {
+        JsonMarshal marshal = new JsonMarshal();
+        int count = 1;
+        byte[] json = marshal.marshal(orders(count));
+        while (json.length < size) {
+            count *= 2;
+            json = marshal.marshal(orders(count));
+        }
+        return Arrays.copyOf(json, size);
+    }
+}
@@ -0,0 +1,120 @@
+package io.netty.transport.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.codec.Compression;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * body 压缩的吞吐量和带宽: 每秒处理的消息数, 以及 {@link Bandwidth} 中每秒的原始字节数和线上字节数.
+ * <p>body 是 JsonMarshal 输出的订单列表, 压缩输出写入池化的 direct buffer.</p>
+ *
+ * @author Suk
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    @Param({"4096", "16384", "61440"})
+    public int bodySize;
+
+    @Param({"NONE", "SNAPPY", "DEFLATE"})
+    public String compression;
+
+    private int     algorithm;
+    private ByteBuf body;
+    private ByteBuf compressed;
+    private ByteBuf out;
+
+    /**
+     * 每秒的原始字节数和压缩后的线上字节数.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bandwidth {
+
+        public long rawBytes;
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            wireBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        if ("SNAPPY".equals(compression)) {
+            algorithm = BodyTypes.COMPRESS_SNAPPY;
+        } else if ("DEFLATE".equals(compression)) {
+            algorithm = BodyTypes.COMPRESS_DEFLATE;
+        } else {
+            algorithm = BodyTypes.COMPRESS_NONE;
+        }
+        PooledByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+        body = alloc.directBuffer(bodySize);
+        body.writeBytes(BenchmarkData.json(bodySize));
+        compressed = alloc.directBuffer(Compression.maxCompressedLength(bodySize));
+        out = alloc.directBuffer(bodySize);
+        compress(new Bandwidth());
+    }
+
+    @TearDown
+    public void tearDown() {
+        body.release();
+        compressed.release();
+        out.release();
+    }
+
+    @Benchmark
+    public ByteBuf compress(Bandwidth bandwidth) {
+        compressed.clear();
+        if (algorithm == BodyTypes.COMPRESS_NONE) {
+            compressed.writeBytes(body, body.readerIndex(), bodySize);
+        } else {
+            Compression.compress(algorithm, body.duplicate(), compressed);
+        }
+        bandwidth.rawBytes += bodySize;
+        bandwidth.wireBytes += compressed.readableBytes();
+        return compressed;
+    }
+
+    @Benchmark
+    public ByteBuf decompress() throws Exception {
+        out.clear();
+        if (algorithm == BodyTypes.COMPRESS_NONE) {
+            out.writeBytes(compressed, compressed.readerIndex(), compressed.readableBytes());
+        } else {
+            Compression.decompress(algorithm, compressed.duplicate(), out);
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(CompressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,149 @@
+package io.netty.transport.benchmark;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.transport.handler.EventLoopIdleStateChecker;
+import io.netty.transport.handler.IdleStateChecker;
+import io.netty.util.HashedWheelTimer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link IdleStateChecker} (全局 HashedWheelTimer) 与 {@link EventLoopIdleStateChecker}
+ * (event loop 内的时间轮) 在大量链路下的对比.
+ * <ul>
+ * <li>register: 给 channelCount 条已激活的链路加上空闲检测的总耗时.</li>
+ * <li>readWrite: channelCount 条链路都已挂上空闲检测时, 随机一条链路读写一次的耗时.</li>
+ * </ul>
+ * <p>EmbeddedChannel 都在调用线程上执行, 这里只比较检测器自身的开销, 不含真实的网络 IO.</p>
+ *
+ * @author Suk
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class IdleStateCheckerBenchmark {
+
+    private static final Object MSG = new Object();
+
+    @Param({"10000", "500000"})
+    public int channelCount;
+
+    @Param({"timer", "eventLoop"})
+    public String mode;
+
+    private HashedWheelTimer timer;
+    private EmbeddedChannel[] channels;
+
+    @Setup(Level.Trial)
+    public void setUpTimer() {
+        timer = new HashedWheelTimer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTimer() {
+        timer.stop();
+    }
+
+    private ChannelHandler newChecker() {
+        if ("timer".equals(mode)) {
+            return new IdleStateChecker(timer, 60, 0, 0);
+        }
+        return new EventLoopIdleStateChecker(60, 0, 0);
+    }
+
+    private void closeChannels() {
+        if (channels == null) {
+            return;
+        }
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+        channels = null;
+    }
+
+    /**
+     * 每次迭代前准备好 channelCount 条未挂空闲检测的链路.
+     */
+    @State(Scope.Benchmark)
+    public static class Bare {
+
+        @Setup(Level.Iteration)
+        public void setUp(IdleStateCheckerBenchmark bench) {
+            bench.closeChannels();
+            bench.channels = new EmbeddedChannel[bench.channelCount];
+            for (int i = 0; i < bench.channelCount; i++) {
+                bench.channels[i] = new EmbeddedChannel();
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(IdleStateCheckerBenchmark bench) {
+            bench.closeChannels();
+        }
+    }
+
+    /**
+     * 整个测试期间保持 channelCount 条已挂上空闲检测的链路.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+
+        @Setup(Level.Trial)
+        public void setUp(IdleStateCheckerBenchmark bench) {
+            bench.channels = new EmbeddedChannel[bench.channelCount];
+            for (int i = 0; i < bench.channelCount; i++) {
+                bench.channels[i] = new EmbeddedChannel(bench.newChecker());
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(IdleStateCheckerBenchmark bench) {
+            bench.closeChannels();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void register(Bare bare) {
+        for (EmbeddedChannel channel : channels) {
+            channel.pipeline().addLast(newChecker());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Object readWrite(Loaded loaded) {
+        EmbeddedChannel channel = channels[ThreadLocalRandom.current().nextInt(channels.length)];
+        channel.writeInbound(MSG);
+        channel.writeOutbound(MSG);
+        channel.readInbound();
+        return channel.readOutbound();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(IdleStateCheckerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
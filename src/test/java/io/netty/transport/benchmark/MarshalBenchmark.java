@@ -0,0 +1,81 @@
+package io.netty.transport.benchmark;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.transport.codec.BinaryMarshal;
+import io.netty.transport.codec.JsonMarshal;
+import io.netty.transport.codec.StreamMarshal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link BinaryMarshal} 与 {@link JsonMarshal} 的编组速度, 对象是 {@link BenchmarkData.OrderBatch}.
+ * 编组后的大小见 {@code BinaryMarshalTest#smallerThanJson()}.
+ *
+ * @author Suk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MarshalBenchmark {
+
+    @Param({"json", "binary"})
+    public String format;
+
+    @Param({"1", "20"})
+    public int orders;
+
+    private StreamMarshal           marshal;
+    private BenchmarkData.OrderBatch batch;
+    private ByteBuf                 out;
+    private ByteBuf                 encoded;
+
+    @Setup
+    public void setUp() {
+        marshal = "json".equals(format) ? new JsonMarshal() : new BinaryMarshal();
+        batch = BenchmarkData.batch(orders);
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+        encoded = PooledByteBufAllocator.DEFAULT.directBuffer(64 * 1024);
+        marshal.marshal(batch, encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        encoded.release();
+    }
+
+    @Benchmark
+    public ByteBuf marshal() {
+        out.clear();
+        marshal.marshal(batch, out);
+        return out;
+    }
+
+    @Benchmark
+    public BenchmarkData.OrderBatch unmarshal() {
+        return marshal.unmarshal(encoded.duplicate(), BenchmarkData.OrderBatch.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MarshalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package io.netty.transport.benchmark;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.transport.UnresolvedAddress;
+import io.netty.transport.channel.WarmUpGroupSelector;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.channel.WrapChannelGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link WarmUpGroupSelector#next()} 的耗时随 group 数量的变化.
+ * <p>warming=false 时所有 group 都已预热完成 (均匀选择), warming=true 时各 group 的预热时间不同,
+ * 权重各不相同 (二分查找).</p>
+ *
+ * @author Suk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WarmUpGroupSelectorBenchmark {
+
+    @Param({"1", "8", "64", "512"})
+    public int groupCount;
+
+    @Param({"false", "true"})
+    public boolean warming;
+
+    private final List<EmbeddedChannel> channels = new ArrayList<EmbeddedChannel>();
+    private WarmUpGroupSelector selector;
+
+    @Setup
+    public void setUp() {
+        List<WrapChannelGroup> groups = new ArrayList<WrapChannelGroup>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            WrapChannelGroup group = new WrapChannelGroup(new UnresolvedAddress("127.0.0.1",
+                    10000 + i));
+            // 预热中的 group 在测试期间权重各不相同
+            group.setWarmUp(warming ? 3600000 + i * 60000 : 0);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            channels.add(channel);
+            group.add(WrapChannel.attachChannel(channel));
+            groups.add(group);
+        }
+        selector = new WarmUpGroupSelector(groups);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public WrapChannelGroup next() {
+        return selector.next();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(WarmUpGroupSelectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
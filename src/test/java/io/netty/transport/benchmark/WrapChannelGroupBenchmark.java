@@ -0,0 +1,73 @@
+package io.netty.transport.benchmark;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.transport.UnresolvedAddress;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.channel.WrapChannelGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link WrapChannelGroup#next()} 在不同 channel 数量下的耗时, 使用默认的轮询选择.
+ *
+ * @author Suk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WrapChannelGroupBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int channelCount;
+
+    private final List<EmbeddedChannel> channels = new ArrayList<EmbeddedChannel>();
+    private WrapChannelGroup group;
+
+    @Setup
+    public void setUp() {
+        group = new WrapChannelGroup(new UnresolvedAddress("127.0.0.1", 10000));
+        for (int i = 0; i < channelCount; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            channels.add(channel);
+            group.add(WrapChannel.attachChannel(channel));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EmbeddedChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    public WrapChannel next() {
+        return group.next();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(WrapChannelGroupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+package io.netty.transport.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.transport.UnresolvedAddress;
+import io.netty.util.SystemClock;
+import org.junit.Test;
+
+/**
+ * {@link WarmUpGroupSelector} 的预热权重测试.
+ *
+ * @author Suk
+ */
+public class WarmUpGroupSelectorTest {
+
+    @Test
+    public void membershipChangesDoNotRestartWarmUp() throws Exception {
+        WrapChannelGroup group = new WrapChannelGroup(new UnresolvedAddress("127.0.0.1", 10000));
+        group.setWarmUp(60000);
+        WrapChannel first = WrapChannel.attachChannel(new EmbeddedChannel());
+        WrapChannel second = WrapChannel.attachChannel(new EmbeddedChannel());
+
+        group.add(first);
+        long since = group.availableSince();
+        Thread.sleep(20);
+        // 重连和连接池扩缩容
+        group.add(second);
+        group.remove(first);
+        group.add(first);
+        assertEquals(since, group.availableSince());
+
+        long now = since + 30000;
+        assertEquals(WarmUpGroupSelector.DEFAULT_WEIGHT / 2, WarmUpGroupSelector.weight(group, now));
+
+        // 变为空之后重新开始预热
+        group.remove(first);
+        group.remove(second);
+        assertEquals(0, WarmUpGroupSelector.weight(group, now));
+        Thread.sleep(20);
+        group.add(first);
+        assertTrue(group.availableSince() > since);
+        assertEquals(1, WarmUpGroupSelector.weight(group, SystemClock.millisClock().now()));
+    }
+}
@@ -0,0 +1,141 @@
+package io.netty.transport.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.transport.benchmark.BenchmarkData;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * {@link BinaryMarshal} 的编解码测试.
+ *
+ * @author Suk
+ */
+public class BinaryMarshalTest {
+
+    private final BinaryMarshal marshal = new BinaryMarshal();
+
+    @Test
+    public void roundTripPojo() {
+        User user = new User();
+        user.id = 42L;
+        user.age = -7;
+        user.name = "张三";
+        user.role = Role.ADMIN;
+        user.balance = new BigDecimal("12345.678");
+        user.created = new Date(1500000000000L);
+        user.avatar = new byte[]{1, 2, 3};
+        user.scores = new int[]{90, 85, 100};
+        user.tags = new ArrayList<String>(Arrays.asList("a", "b"));
+        user.attrs = new LinkedHashMap<String, Integer>();
+        user.attrs.put("x", 1);
+        user.attrs.put("y", null);
+        user.friend = new User();
+        user.friend.name = "李四";
+
+        User copy = marshal.unmarshal(marshal.marshal(user), User.class);
+
+        assertEquals(42L, copy.id);
+        assertEquals(-7, copy.age);
+        assertEquals("张三", copy.name);
+        assertEquals(Role.ADMIN, copy.role);
+        assertEquals(user.balance, copy.balance);
+        assertEquals(user.created, copy.created);
+        assertArrayEquals(user.avatar, copy.avatar);
+        assertArrayEquals(user.scores, copy.scores);
+        assertEquals(user.tags, copy.tags);
+        assertEquals(user.attrs, copy.attrs);
+        assertEquals("李四", copy.friend.name);
+        assertNull(copy.friend.friend);
+    }
+
+    @Test
+    public void smallerThanJson() {
+        BenchmarkData.OrderBatch batch = BenchmarkData.batch(20);
+        byte[] json = new JsonMarshal().marshal(batch);
+        byte[] binary = marshal.marshal(batch);
+        // 20 个订单: json 5664 字节, binary 2836 字节
+        assertTrue(binary.length + " / " + json.length, binary.length * 5 < json.length * 3);
+
+        BenchmarkData.OrderBatch copy = marshal.unmarshal(binary, BenchmarkData.OrderBatch.class);
+        assertEquals(20, copy.orders.size());
+        assertEquals(batch.orders.get(19).items.get(2).sku, copy.orders.get(19).items.get(2).sku);
+        assertEquals(batch.orders.get(19).amount, copy.orders.get(19).amount);
+    }
+
+    @Test
+    public void unmarshalConsumesBuffer() {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            marshal.marshal(Arrays.asList(1, 2, 3), buf);
+            List<?> list = marshal.unmarshal(buf, List.class);
+            assertEquals(Arrays.asList(1, 2, 3), list);
+            assertFalse(buf.isReadable());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBytesLongerThanInput() {
+        // BYTES, 长度 0x7FFFFFFF
+        marshal.unmarshal(new byte[]{BinaryMarshal.BYTES, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, 0x07}, Object.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsListLongerThanInput() {
+        marshal.unmarshal(new byte[]{BinaryMarshal.LIST, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, 0x07}, Object.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMapLongerThanInput() {
+        // 3 个 entry 至少需要 6 个字节
+        marshal.unmarshal(new byte[]{BinaryMarshal.MAP, 3, BinaryMarshal.NULL,
+                BinaryMarshal.NULL, BinaryMarshal.NULL, BinaryMarshal.NULL}, Map.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDeepNesting() {
+        int depth = BinaryMarshal.MAX_DEPTH + 1;
+        byte[] bytes = new byte[depth * 2 + 1];
+        for (int i = 0; i < depth; i++) {
+            bytes[i * 2] = BinaryMarshal.LIST;
+            bytes[i * 2 + 1] = 1;
+        }
+        bytes[depth * 2] = BinaryMarshal.NULL;
+        marshal.unmarshal(bytes, Object.class);
+    }
+
+    enum Role {
+        USER, ADMIN
+    }
+
+    static class User {
+
+        long                 id;
+        int                  age;
+        String               name;
+        Role                 role;
+        BigDecimal           balance;
+        Date                 created;
+        byte[]               avatar;
+        int[]                scores;
+        List<String>         tags;
+        Map<String, Integer> attrs;
+        User                 friend;
+    }
+}
@@ -0,0 +1,79 @@
+package io.netty.transport.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * {@link Compression} 的压缩和解压测试, 数据大于内部 8K 缓冲区, heap 和 direct buffer 都要覆盖.
+ *
+ * @author Suk
+ */
+public class CompressionTest {
+
+    /**
+     * 重复的随机块, 数据超过 32K, 覆盖 snappy 的分块.
+     */
+    static byte[] data(int length, int blockSize) {
+        byte[] block = new byte[blockSize];
+        new Random(1).nextBytes(block);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = block[i % block.length];
+        }
+        return data;
+    }
+
+    private static void roundTrip(int compression, boolean direct) throws Exception {
+        // 块在压缩窗口之内, 可以压缩
+        roundTrip(compression, direct, data(100 * 1024, 20000), true);
+        // 重复距离超过 32K
+        roundTrip(compression, direct, data(100 * 1024, 40000), false);
+    }
+
+    private static void roundTrip(int compression, boolean direct, byte[] data,
+                                  boolean compressible) throws Exception {
+        ByteBuf in = direct ? Unpooled.directBuffer(data.length) : Unpooled.buffer(data.length);
+        ByteBuf compressed = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        ByteBuf out = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        try {
+            in.writeBytes(data);
+            Compression.compress(compression, in, compressed);
+            assertEquals(data.length, Compression.rawLength(compressed));
+            if (compressible) {
+                assertTrue(compressed.readableBytes() < data.length);
+            }
+
+            Compression.decompress(compression, compressed, out);
+            assertEquals(Unpooled.wrappedBuffer(data), out);
+        } finally {
+            in.release();
+            compressed.release();
+            out.release();
+        }
+    }
+
+    @Test
+    public void snappyHeap() throws Exception {
+        roundTrip(BodyTypes.COMPRESS_SNAPPY, false);
+    }
+
+    @Test
+    public void snappyDirect() throws Exception {
+        roundTrip(BodyTypes.COMPRESS_SNAPPY, true);
+    }
+
+    @Test
+    public void deflateHeap() throws Exception {
+        roundTrip(BodyTypes.COMPRESS_DEFLATE, false);
+    }
+
+    @Test
+    public void deflateDirect() throws Exception {
+        roundTrip(BodyTypes.COMPRESS_DEFLATE, true);
+    }
+}
@@ -0,0 +1,154 @@
+package io.netty.transport.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.transport.channel.WrapChannel;
+import io.netty.transport.codec.BodyTypes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import me.asu.socket.message.ProtoMessage;
+import org.junit.Test;
+
+/**
+ * {@link ChunkedProtoInput} 发送, 经过 {@link ProtoMessageDecoder} 由 {@link ChunkedMessageHandler}
+ * 重组的测试, 包括取消帧和空闲超时.
+ *
+ * @author Suk
+ */
+public class ChunkedMessageHandlerTest {
+
+    private static final int SEQ_ID = 9;
+
+    private static ProtoMessage header() {
+        ProtoMessage header = new ProtoMessage();
+        header.getHeader().setCmdId(2001);
+        header.getHeader().setSeqId(SEQ_ID);
+        return header;
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    /**
+     * 通过 ChunkedWriteHandler 写出, 返回所有的帧.
+     */
+    private static List<ByteBuf> send(byte[] data, int chunkSize) {
+        EmbeddedChannel sender = new EmbeddedChannel(new ChunkedWriteHandler());
+        sender.writeAndFlush(new ChunkedProtoInput(header(), new ByteArrayInputStream(data),
+                chunkSize));
+        List<ByteBuf> frames = new ArrayList<ByteBuf>();
+        for (ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+            frames.add(frame);
+        }
+        sender.finish();
+        return frames;
+    }
+
+    private static EmbeddedChannel receiver(RecordingHandler handler, long idleTimeoutMillis) {
+        return new EmbeddedChannel(new ProtoMessageDecoder(1024 * 1024, true),
+                new ChunkedMessageHandler(handler, 4, idleTimeoutMillis));
+    }
+
+    @Test
+    public void reassemblesStream() {
+        byte[] data = data(10000);
+        List<ByteBuf> frames = send(data, 3000);
+        // 4 个数据帧和 1 个结束帧
+        assertEquals(5, frames.size());
+        assertTrue(BodyTypes.isChunk(frames.get(0).getByte(13)));
+
+        RecordingHandler handler = new RecordingHandler();
+        EmbeddedChannel receiver = receiver(handler, 60000);
+        for (ByteBuf frame : frames) {
+            receiver.writeInbound(frame);
+        }
+        assertEquals(1, handler.started);
+        assertArrayEquals(data, handler.received.toByteArray());
+        assertEquals(1, handler.completed);
+        assertNull(handler.abortCause);
+        assertFalse(receiver.finish());
+    }
+
+    @Test
+    public void abortFrameCancelsStream() {
+        List<ByteBuf> frames = send(data(10000), 3000);
+        RecordingHandler handler = new RecordingHandler();
+        EmbeddedChannel receiver = receiver(handler, 60000);
+        receiver.writeInbound(frames.remove(0));
+        receiver.writeInbound(ChunkedProtoInput.abortFrame(ByteBufAllocator.DEFAULT, header()));
+
+        assertEquals(0, handler.completed);
+        assertTrue(handler.abortCause instanceof IOException);
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+        receiver.finish();
+    }
+
+    @Test
+    public void idleStreamTimesOut() throws Exception {
+        List<ByteBuf> frames = send(data(10000), 3000);
+        RecordingHandler handler = new RecordingHandler();
+        EmbeddedChannel receiver = receiver(handler, 10);
+        receiver.writeInbound(frames.remove(0));
+
+        Thread.sleep(50);
+        receiver.runScheduledPendingTasks();
+
+        assertEquals(0, handler.completed);
+        assertTrue(handler.abortCause instanceof TimeoutException);
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+        receiver.finish();
+    }
+
+    private static final class RecordingHandler implements StreamHandler {
+
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int       started;
+        int       completed;
+        Throwable abortCause;
+
+        @Override
+        public void onStart(WrapChannel channel, ProtoMessage first) throws Exception {
+            assertEquals(2001, first.getHeader().getCmdId());
+            started++;
+        }
+
+        @Override
+        public void onChunk(WrapChannel channel, int seqId, ByteBuf chunk) throws Exception {
+            assertEquals(SEQ_ID, seqId);
+            byte[] bytes = new byte[chunk.readableBytes()];
+            chunk.readBytes(bytes);
+            received.write(bytes);
+        }
+
+        @Override
+        public void onComplete(WrapChannel channel, int seqId) throws Exception {
+            completed++;
+        }
+
+        @Override
+        public void onAbort(WrapChannel channel, int seqId, Throwable cause) {
+            abortCause = cause;
+        }
+    }
+}
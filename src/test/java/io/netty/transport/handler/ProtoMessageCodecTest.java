@@ -0,0 +1,182 @@
+package io.netty.transport.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.transport.codec.BodyTypes;
+import io.netty.transport.exception.IOSignals;
+import io.netty.transport.message.ByteBufProtoMessage;
+import io.netty.transport.message.Heartbeats;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * {@link ProtoMessageEncoder} 和 {@link ProtoMessageDecoder} 的编解码测试, 包括 body 压缩.
+ *
+ * @author Suk
+ */
+public class ProtoMessageCodecTest {
+
+    private static final int BODY_LENGTH = 4096;
+
+    private static byte[] body() {
+        byte[] body = new byte[BODY_LENGTH];
+        Arrays.fill(body, (byte) 'a');
+        return body;
+    }
+
+    /**
+     * 超过 32K 的 body, Snappy 需要分块.
+     */
+    private static byte[] largeBody() {
+        byte[] block = new byte[20000];
+        new Random(1).nextBytes(block);
+        byte[] body = new byte[60 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = block[i % block.length];
+        }
+        return body;
+    }
+
+    private static ByteBufProtoMessage message(byte[] body) {
+        ByteBufProtoMessage message = new ByteBufProtoMessage(Unpooled.wrappedBuffer(body));
+        message.getHeader().setCmdId(1001);
+        message.getHeader().setSeqId(7);
+        message.getHeader().setCmdType((byte) 1);
+        message.getHeader().setBodyType((byte) 2);
+        message.getHeader().setCode((byte) 3);
+        message.getHeader().setTtl((byte) 4);
+        return message;
+    }
+
+    private static ByteBuf encode(int compression) {
+        return encode(compression, body());
+    }
+
+    private static ByteBuf encode(int compression, byte[] body) {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ProtoMessageEncoder(compression, 256));
+        assertTrue(channel.writeOutbound(message(body)));
+        ByteBuf frame = channel.readOutbound();
+        channel.finish();
+        return frame;
+    }
+
+    private static ByteBufProtoMessage decode(ByteBuf frame, ProtoMessageDecoder decoder) {
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        assertTrue(channel.writeInbound(frame));
+        ByteBufProtoMessage message = channel.readInbound();
+        channel.finish();
+        return message;
+    }
+
+    private static ProtoMessageDecoder decoder(boolean decompress) {
+        ProtoMessageDecoder decoder = new ProtoMessageDecoder(1024 * 1024, true);
+        decoder.setDecompress(decompress);
+        return decoder;
+    }
+
+    private static void assertMessage(ByteBufProtoMessage message, int compression) {
+        assertEquals(1001, message.getHeader().getCmdId());
+        assertEquals(7, message.getHeader().getSeqId());
+        assertEquals(1, message.getHeader().getCmdType());
+        assertEquals(2, BodyTypes.marshalType(message.getHeader().getBodyType()));
+        assertEquals(compression, BodyTypes.compression(message.getHeader().getBodyType()));
+        assertEquals(3, message.getHeader().getCode());
+        assertEquals(4, message.getHeader().getTtl());
+    }
+
+    @Test
+    public void roundTrip() {
+        ByteBufProtoMessage message = decode(encode(BodyTypes.COMPRESS_NONE), decoder(false));
+        try {
+            assertMessage(message, BodyTypes.COMPRESS_NONE);
+            assertEquals(Unpooled.wrappedBuffer(body()), message.content());
+        } finally {
+            message.release();
+        }
+    }
+
+    @Test
+    public void roundTripCompressed() {
+        int[] compressions = {BodyTypes.COMPRESS_SNAPPY, BodyTypes.COMPRESS_DEFLATE};
+        for (int compression : compressions) {
+            ByteBuf frame = encode(compression);
+            assertTrue(frame.readableBytes() < ByteBufProtoMessage.HEADER_LENGTH + BODY_LENGTH);
+            assertEquals(compression, BodyTypes.compression(frame.getByte(13)));
+
+            ByteBufProtoMessage message = decode(frame, decoder(true));
+            try {
+                assertMessage(message, BodyTypes.COMPRESS_NONE);
+                assertEquals(Unpooled.wrappedBuffer(body()), message.content());
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    @Test
+    public void roundTripLargeCompressed() {
+        byte[] body = largeBody();
+        int[] compressions = {BodyTypes.COMPRESS_SNAPPY, BodyTypes.COMPRESS_DEFLATE};
+        for (int compression : compressions) {
+            ByteBuf frame = encode(compression, body);
+            assertTrue(frame.readableBytes() < ByteBufProtoMessage.HEADER_LENGTH + body.length);
+
+            ByteBufProtoMessage message = decode(frame, decoder(true));
+            try {
+                assertMessage(message, BodyTypes.COMPRESS_NONE);
+                assertEquals(Unpooled.wrappedBuffer(body), message.content());
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    @Test
+    public void compressedBodyPassesThroughByDefault() {
+        ByteBufProtoMessage message = decode(encode(BodyTypes.COMPRESS_DEFLATE), decoder(false));
+        try {
+            assertMessage(message, BodyTypes.COMPRESS_DEFLATE);
+            assertTrue(message.content().readableBytes() < BODY_LENGTH);
+        } finally {
+            message.release();
+        }
+    }
+
+    @Test
+    public void rejectsOversizedDecompression() {
+        ProtoMessageDecoder decoder = decoder(true);
+        decoder.setMaxDecompressedLength(BODY_LENGTH - 1);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+        try {
+            channel.writeInbound(encode(BodyTypes.COMPRESS_DEFLATE));
+            fail("expected " + IOSignals.BODY_TOO_LARGE);
+        } catch (DecoderException e) {
+            assertEquals(IOSignals.BODY_TOO_LARGE, e.getCause());
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void heartbeatIsMarkedByCmdType() {
+        ByteBufProtoMessage heartbeat = decode(Heartbeats.heartbeatContent(), decoder(false));
+        ByteBufProtoMessage empty = new ByteBufProtoMessage(Unpooled.EMPTY_BUFFER);
+        try {
+            assertTrue(Heartbeats.isHeartbeat(heartbeat));
+            // cmdId, seqId 为0且没有 body 的业务报文不是心跳
+            assertFalse(Heartbeats.isHeartbeat(empty));
+        } finally {
+            heartbeat.release();
+            empty.release();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.netty.transport.handler.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 10k 条链路同时断开后一起重连的压力测试.
+ * <p>使用 local transport, 不受文件句柄数限制; 每条链路一个 watchdog, 共享同一个 Bootstrap.</p>
+ *
+ * @author Suk
+ */
+public class ConnectionWatchdogStressTest {
+
+    private static final int CHANNELS = 10000;
+
+    private final LocalAddress address = new LocalAddress("watchdog-stress");
+
+    private EventLoopGroup   serverGroup;
+    private EventLoopGroup   clientGroup;
+    private HashedWheelTimer timer;
+    private ChannelGroup     accepted;
+    private Channel          server;
+
+    private final List<ConnectionWatchdog> watchdogs = new ArrayList<ConnectionWatchdog>();
+
+    @Before
+    public void setUp() throws Exception {
+        serverGroup = new DefaultEventLoopGroup(2);
+        clientGroup = new DefaultEventLoopGroup(4);
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        accepted = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        server = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+
+                    @Override
+                    protected void initChannel(LocalChannel ch) throws Exception {
+                        accepted.add(ch);
+                    }
+                })
+                .bind(address).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ConnectionWatchdog watchdog : watchdogs) {
+            watchdog.stop();
+        }
+        accepted.close().awaitUninterruptibly();
+        server.close().awaitUninterruptibly();
+        timer.stop();
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    @Test
+    public void reconnectAllAtOnce() throws Exception {
+        final CountDownLatch reconnected = new CountDownLatch(CHANNELS);
+        Bootstrap bootstrap = new Bootstrap().group(clientGroup).channel(LocalChannel.class);
+
+        for (int i = 0; i < CHANNELS; i++) {
+            final ConnectionWatchdog watchdog = new ConnectionWatchdog(bootstrap, timer, address,
+                    null) {
+
+                @Override
+                public ChannelHandler[] handlers() {
+                    return new ChannelHandler[]{this, new ChannelInboundHandlerAdapter()};
+                }
+            };
+            watchdog.addReconnectListener(new ConnectionWatchdog.ReconnectedListener() {
+
+                @Override
+                public void operationComplete(boolean flag, int attempts, ConnectionWatchdog dog) {
+                    if (flag) {
+                        reconnected.countDown();
+                    }
+                }
+            });
+            watchdogs.add(watchdog);
+            bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+
+                @Override
+                protected void initChannel(Channel ch) throws Exception {
+                    ch.pipeline().addLast(watchdog.handlers());
+                }
+            }).connect(address);
+        }
+        waitForAccepted(CHANNELS, 30);
+
+        // 模拟网络闪断: 服务端一次关闭所有链路
+        accepted.close().awaitUninterruptibly();
+
+        assertTrue("只有 " + (CHANNELS - reconnected.getCount()) + " 条链路重连成功",
+                reconnected.await(60, TimeUnit.SECONDS));
+        waitForAccepted(CHANNELS, 10);
+        assertEquals(CHANNELS, accepted.size());
+    }
+
+    private void waitForAccepted(int expected, int timeoutSeconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (accepted.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, accepted.size());
+    }
+}
@@ -0,0 +1,61 @@
+package io.netty.transport.handler.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * {@link ConnectionWatchdog} 被多条链路共享时, 单条链路的 {@link ConnectionWatchdog#skipReconnect}.
+ *
+ * @author Suk
+ */
+public class ConnectionWatchdogTest {
+
+    @Test
+    public void skipReconnectOnlyAffectsMarkedChannel() {
+        final AtomicInteger scheduled = new AtomicInteger();
+        Timer timer = new Timer() {
+
+            @Override
+            public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+                scheduled.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public Set<Timeout> stop() {
+                return Collections.emptySet();
+            }
+        };
+        ConnectionWatchdog watchdog = new ConnectionWatchdog(new Bootstrap(), timer,
+                new InetSocketAddress("127.0.0.1", 10000), null) {
+
+            @Override
+            public ChannelHandler[] handlers() {
+                return new ChannelHandler[]{this};
+            }
+        };
+        EmbeddedChannel pooled = new EmbeddedChannel(watchdog);
+        EmbeddedChannel other = new EmbeddedChannel(watchdog);
+
+        ConnectionWatchdog.skipReconnect(pooled);
+        pooled.close();
+        assertEquals(0, scheduled.get());
+        assertTrue(watchdog.isStarted());
+
+        other.close();
+        assertEquals(1, scheduled.get());
+    }
+}